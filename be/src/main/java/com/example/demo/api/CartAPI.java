@@ -0,0 +1,49 @@
+package com.example.demo.api;
+
+import com.example.demo.entity.request.OrderDetailRequest;
+import com.example.demo.entity.response.CartQuoteResponse;
+import com.example.demo.service.CartService;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/cart")
+@SecurityRequirement(name = "api")
+public class CartAPI {
+
+    @Autowired
+    CartService cartService;
+
+    // GET the current user's saved cart with current prices and stock
+    @GetMapping
+    public ResponseEntity<CartQuoteResponse> getCart() {
+        return ResponseEntity.ok(cartService.getCart());
+    }
+
+    // PUT the quantity of a product in the cart, 0 removes it
+    @PutMapping("/{productId}")
+    public ResponseEntity<CartQuoteResponse> setItem(@PathVariable long productId, @RequestParam int quantity) {
+        return ResponseEntity.ok(cartService.setItem(productId, quantity));
+    }
+
+    @DeleteMapping("/{productId}")
+    public ResponseEntity<CartQuoteResponse> removeItem(@PathVariable long productId) {
+        return ResponseEntity.ok(cartService.setItem(productId, 0));
+    }
+
+    @DeleteMapping
+    public ResponseEntity<Void> clear() {
+        cartService.clear();
+        return ResponseEntity.noContent().build();
+    }
+
+    // POST price a list of lines without saving them; open to guests
+    @PostMapping("/quote")
+    public ResponseEntity<CartQuoteResponse> quote(@RequestBody List<OrderDetailRequest> details) {
+        return ResponseEntity.ok(cartService.quote(details));
+    }
+}
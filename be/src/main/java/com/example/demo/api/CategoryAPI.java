@@ -2,11 +2,15 @@ package com.example.demo.api;
 
 import com.example.demo.entity.Category;
 import com.example.demo.entity.request.CategoryRequest;
+import com.example.demo.entity.response.CategoryResponse;
+import com.example.demo.service.CatalogVersion;
 import com.example.demo.service.CategoryService;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -18,16 +22,31 @@ public class CategoryAPI {
     @Autowired
     private CategoryService categoryService;
 
-    // GET all categories
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    // GET all categories with product counts, price range and skin type counts
     @GetMapping
-    public ResponseEntity<List<Category>> getAll() {
-        return ResponseEntity.ok(categoryService.getAll());
+    public ResponseEntity<List<CategoryResponse>> getAll(WebRequest request) {
+        String etag = catalogVersion.etag();
+        if (request.checkNotModified(etag)) {
+            return null; // 304, nothing is read or serialized
+        }
+        return cached(etag).body(categoryService.getAll());
     }
 
     // GET category by ID
     @GetMapping("/{id}")
-    public ResponseEntity<Category> getById(@PathVariable Long id) {
-        return categoryService.getById(id);
+    public ResponseEntity<CategoryResponse> getById(@PathVariable Long id, WebRequest request) {
+        String etag = catalogVersion.etag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        ResponseEntity<CategoryResponse> response = categoryService.getById(id);
+        if (!response.hasBody()) {
+            return response;
+        }
+        return cached(etag).body(response.getBody());
     }
 
     // POST create a new category
@@ -47,4 +66,9 @@ public class CategoryAPI {
     public ResponseEntity<Void> delete(@PathVariable Long id) {
         return categoryService.delete(id);
     }
+
+    // categories are only served to signed-in users, so keep them out of shared caches
+    private ResponseEntity.BodyBuilder cached(String etag) {
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache().cachePrivate());
+    }
 }
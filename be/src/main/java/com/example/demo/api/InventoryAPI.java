@@ -0,0 +1,49 @@
+package com.example.demo.api;
+
+import com.example.demo.entity.response.HotStockResponse;
+import com.example.demo.exception.exceptions.ForbiddenException;
+import com.example.demo.service.HotStockService;
+import com.example.demo.utils.AccountUtils;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/inventory")
+@SecurityRequirement(name = "api")
+public class InventoryAPI {
+
+    @Autowired
+    private HotStockService hotStockService;
+
+    @Autowired
+    private AccountUtils accountUtils;
+
+    // GET products whose stock is currently held in memory
+    @GetMapping("/hot")
+    public ResponseEntity<List<HotStockResponse>> getHot() {
+        return ResponseEntity.ok(hotStockService.getAll());
+    }
+
+    // POST mark a product as hot before a flash sale; staff only
+    @PostMapping("/hot/{productId}")
+    public ResponseEntity<HotStockResponse> markHot(@PathVariable long productId) {
+        if (!accountUtils.isStaff()) {
+            throw new ForbiddenException("Only staff can move a product onto the hot stock path");
+        }
+        return ResponseEntity.ok(hotStockService.markHot(productId));
+    }
+
+    // DELETE return a product to normal checkout once the sale is over; staff only
+    @DeleteMapping("/hot/{productId}")
+    public ResponseEntity<Void> unmarkHot(@PathVariable long productId) {
+        if (!accountUtils.isStaff()) {
+            throw new ForbiddenException("Only staff can move a product off the hot stock path");
+        }
+        hotStockService.unmarkHot(productId);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.demo.api;
+
+import com.example.demo.entity.response.MediaResponse;
+import com.example.demo.enums.MediaVariant;
+import com.example.demo.service.MediaService;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/api/media")
+@SecurityRequirement(name = "api")
+public class MediaAPI {
+
+    @Autowired
+    private MediaService mediaService;
+
+    // POST upload a product or review image, use the returned url as Product.image / Rating.image
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<MediaResponse> upload(@RequestParam("file") MultipartFile file) throws IOException {
+        return ResponseEntity.ok(mediaService.store(file));
+    }
+
+    // GET an image, ?variant=thumb or ?variant=medium for a resized copy; supports Range requests
+    @GetMapping("/{id:.+}")
+    public void get(@PathVariable String id, @RequestParam(required = false) String variant,
+                    HttpServletRequest request, HttpServletResponse response) throws IOException {
+        mediaService.serve(id, MediaVariant.from(variant), request, response);
+    }
+}
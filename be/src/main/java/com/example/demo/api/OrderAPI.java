@@ -2,16 +2,29 @@ package com.example.demo.api;
 
 import com.example.demo.entity.Order;
 import com.example.demo.entity.request.OrderRequest;
+import com.example.demo.entity.request.OrderStatusRequest;
+import com.example.demo.entity.response.OrderHistoryPageResponse;
+import com.example.demo.entity.response.OrderPageResponse;
+import com.example.demo.entity.response.OrderStatusResponse;
 import com.example.demo.entity.response.PaymentResponse;
 import com.example.demo.enums.OrderStatus;
+import com.example.demo.exception.exceptions.ForbiddenException;
+import com.example.demo.model.OrderFilter;
+import com.example.demo.service.IdempotencyService;
+import com.example.demo.service.OrderListingService;
 import com.example.demo.service.OrderService;
+import com.example.demo.service.ProductImportService;
+import com.example.demo.utils.AccountUtils;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
-import java.util.UUID;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/orders")
@@ -21,34 +34,89 @@ public class OrderAPI {
     @Autowired
     OrderService orderService;
 
-    @PostMapping(path = "/create")
-    public ResponseEntity<PaymentResponse> create(@RequestBody OrderRequest orderRequest) throws Exception {
+    @Autowired
+    IdempotencyService idempotencyService;
 
-        PaymentResponse response = new PaymentResponse();
-        UUID orderId = UUID.randomUUID();
-        String urlPayment = orderService.create(orderRequest);
+    @Autowired
+    OrderListingService orderListingService;
 
-        response.setPaymentUrl(urlPayment);
-        response.setOrderId(orderId.toString());
+    @Autowired
+    AccountUtils accountUtils;
 
-        return ResponseEntity.ok(response);
+    // send an Idempotency-Key header to make retries return the first result instead of ordering twice;
+    // the worker thread is released while the payment gateway is called
+    @PostMapping(path = "/create")
+    public CompletableFuture<ResponseEntity<PaymentResponse>> create(@RequestBody OrderRequest orderRequest,
+                                                                     @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        CompletableFuture<PaymentResponse> response = idempotencyKey == null
+                ? orderService.create(orderRequest)
+                : idempotencyService.checkout(idempotencyKey, orderRequest);
+        return response.thenApply(ResponseEntity::ok);
     }
 
+    // PATCH one order; 409 when the transition is not allowed or another update won the race; staff only
     @PatchMapping("{id}")
     public ResponseEntity updateStatus(@RequestParam OrderStatus status, @PathVariable long id) {
+        if (!accountUtils.isStaff()) {
+            throw new ForbiddenException("Only staff can change the status of an order");
+        }
         Order order = orderService.updateStatus(status, id);
         return ResponseEntity.ok(order);
     }
 
+    // PATCH many orders with one set-based update; orders that cannot take the transition are skipped; staff only
+    @PatchMapping("/status")
+    public ResponseEntity<OrderStatusResponse> updateStatuses(@RequestBody OrderStatusRequest request) {
+        if (!accountUtils.isStaff()) {
+            throw new ForbiddenException("Only staff can change the status of an order");
+        }
+        return ResponseEntity.ok(orderService.updateStatuses(request));
+    }
+
+    // GET one page of orders, newest first; pass nextCursor back as cursor for the following page; staff only
     @GetMapping
-    public ResponseEntity getAll() {
-        List<Order> orders = orderService.getAll();
-        return ResponseEntity.ok(orders);
+    public ResponseEntity<OrderPageResponse> getAll(@RequestParam(required = false) OrderStatus status,
+                                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                    @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                    @RequestParam(required = false) Long accountId,
+                                                    @RequestParam(required = false) Double minTotal,
+                                                    @RequestParam(required = false) Double maxTotal,
+                                                    @RequestParam(required = false) Long cursor,
+                                                    @RequestParam(required = false) Integer size) {
+        if (!accountUtils.isStaff()) {
+            throw new ForbiddenException("Only staff can list every order");
+        }
+        OrderFilter filter = new OrderFilter(status, from, to, accountId, minTotal, maxTotal);
+        int pageSize = size == null ? OrderListingService.DEFAULT_PAGE_SIZE
+                : Math.max(1, Math.min(size, OrderListingService.MAX_PAGE_SIZE));
+        return ResponseEntity.ok(orderListingService.page(filter, cursor, pageSize));
+    }
+
+    // GET export every matching order, format=csv (default) or ndjson; staff only
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(required = false) OrderStatus status,
+                                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                        @RequestParam(required = false) Long accountId,
+                                                        @RequestParam(required = false) Double minTotal,
+                                                        @RequestParam(required = false) Double maxTotal,
+                                                        @RequestParam(defaultValue = "csv") String format) {
+        if (!accountUtils.isStaff()) {
+            throw new ForbiddenException("Only staff can export orders");
+        }
+        OrderFilter filter = new OrderFilter(status, from, to, accountId, minTotal, maxTotal);
+        String contentType = format.equalsIgnoreCase("ndjson") ? ProductImportService.NDJSON : ProductImportService.CSV;
+        String fileName = format.equalsIgnoreCase("ndjson") ? "orders.ndjson" : "orders.csv";
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(contentType + ";charset=UTF-8"))
+                .header("Content-Disposition", "attachment; filename=\"" + fileName + "\"")
+                .body(out -> orderListingService.export(filter, out, contentType));
     }
 
+    // GET one page of the current user's orders with their lines, newest first
     @GetMapping("/my-orders")
-    public ResponseEntity<List<Order>> getOrdersByUser() {
-        List<Order> orders = orderService.getOrdersByUser();
-        return ResponseEntity.ok(orders);
+    public ResponseEntity<OrderHistoryPageResponse> getOrdersByUser(@RequestParam(required = false) Long cursor,
+                                                                    @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(orderService.getOrdersByUser(cursor, size));
     }
 }
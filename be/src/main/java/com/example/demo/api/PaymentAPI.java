@@ -1,19 +1,29 @@
 package com.example.demo.api;
 
 import com.example.demo.entity.Order;
+import com.example.demo.entity.PaymentAttempt;
+import com.example.demo.entity.request.MomoNotificationRequest;
+import com.example.demo.entity.response.PaymentGatewayStatsResponse;
+import com.example.demo.entity.response.ReconciliationResponse;
 import com.example.demo.enums.OrderStatus;
+import com.example.demo.enums.PaymentAttemptKind;
+import com.example.demo.exception.exceptions.ForbiddenException;
 import com.example.demo.repository.OrderRepository;
 import com.example.demo.service.MomoPaymentService;
 import com.example.demo.service.OrderService;
+import com.example.demo.service.PaymentAttemptService;
+import com.example.demo.service.PaymentNotificationService;
+import com.example.demo.service.PaymentReconciliationService;
+import com.example.demo.service.VnPayPaymentService;
+import com.example.demo.utils.AccountUtils;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -30,6 +40,52 @@ public class PaymentAPI {
     @Autowired
     private OrderRepository orderRepository;
 
+    @Autowired
+    private PaymentNotificationService paymentNotificationService;
+
+    @Autowired
+    private VnPayPaymentService vnPayPaymentService;
+
+    @Autowired
+    private PaymentReconciliationService paymentReconciliationService;
+
+    @Autowired
+    private PaymentAttemptService paymentAttemptService;
+
+    @Autowired
+    private AccountUtils accountUtils;
+
+    // POST from MoMo (IPN): stored and acknowledged, the order is updated in the background
+    @PostMapping("/notify")
+    public ResponseEntity<Void> momoNotify(@RequestBody MomoNotificationRequest notification) {
+        paymentNotificationService.receiveMomo(notification);
+        return ResponseEntity.noContent().build();
+    }
+
+    // POST reconcile the settlement files waiting in the drop directory now instead of at the next poll; staff only
+    @PostMapping("/reconciliation")
+    public ResponseEntity<List<ReconciliationResponse>> reconcile() throws IOException {
+        if (!accountUtils.isStaff()) {
+            throw new ForbiddenException("Only staff can run payment reconciliation");
+        }
+        return ResponseEntity.ok(paymentReconciliationService.reconcileDropDirectory());
+    }
+
+    // GET every gateway request, redirect and callback of one order; customers only see their own
+    @GetMapping("/attempts")
+    public ResponseEntity<List<PaymentAttempt>> attempts(@RequestParam long orderId) {
+        return ResponseEntity.ok(paymentAttemptService.history(orderId));
+    }
+
+    // GET success rate and latency per gateway over the last hours; staff only
+    @GetMapping("/stats")
+    public ResponseEntity<List<PaymentGatewayStatsResponse>> stats(@RequestParam(defaultValue = "24") int hours) {
+        if (!accountUtils.isStaff()) {
+            throw new ForbiddenException("Only staff can see payment gateway statistics");
+        }
+        return ResponseEntity.ok(paymentAttemptService.stats(Math.max(1, hours)));
+    }
+
     @GetMapping("/verify")
     public ResponseEntity<Map<String, Object>> verifyPayment(
             @RequestParam(required = false) String orderId,
@@ -42,6 +98,7 @@ public class PaymentAPI {
         
         Map<String, Object> response = new HashMap<>();
         
+        long start = System.nanoTime();
         try {
             // Extract order ID from MoMo order ID format (ORDER_xx_timestamp)
             String[] parts = orderId.split("_");
@@ -60,18 +117,20 @@ public class PaymentAPI {
             boolean isValid = momoPaymentService.verifyPaymentResponse(
                     orderId, requestId, amount, resultCode, transId, signature);
             
-            if (isValid && "0".equals(resultCode)) {
-                // Update order status to PAID
-                orderService.updateStatus(OrderStatus.PAID, order.getId());
+            boolean paid = isValid && "0".equals(resultCode) && orderService.markPaid(order.getId());
+            paymentAttemptService.record(MomoPaymentService.METHOD, PaymentAttemptKind.REDIRECT, order.getId(),
+                    parseLong(amount), transId, isValid, paid, start, message);
+            
+            if (paid) {
+                // the IPN may have got there first; either way the order is paid exactly once
+                order.setStatus(OrderStatus.PAID);
                 
                 response.put("success", true);
                 response.put("message", "Payment verified successfully");
                 response.put("order", order);
                 response.put("orderInfo", "Payment for order #" + order.getId());
             } else {
-                // Update order status to FAILED or IN_PROCESS based on your enum
-                orderService.updateStatus(OrderStatus.IN_PROCESS, order.getId());
-                
+                // a failed payment leaves the order as it is: unpaid orders stay IN_PROCESS until they expire
                 response.put("success", false);
                 response.put("message", message != null ? message : "Payment verification failed");
                 response.put("order", order);
@@ -86,50 +145,27 @@ public class PaymentAPI {
     }
     
     @GetMapping("/vnpay-verify")
-    public ResponseEntity<Map<String, Object>> verifyVnPayPayment(
-            @RequestParam(required = false) String orderId,
-            @RequestParam(required = false) String vnp_Amount,
-            @RequestParam(required = false) String vnp_BankCode,
-            @RequestParam(required = false) String vnp_CardType,
-            @RequestParam(required = false) String vnp_OrderInfo,
-            @RequestParam(required = false) String vnp_PayDate,
-            @RequestParam(required = false) String vnp_ResponseCode,
-            @RequestParam(required = false) String vnp_TmnCode,
-            @RequestParam(required = false) String vnp_TransactionNo,
-            @RequestParam(required = false) String vnp_TxnRef,
-            @RequestParam(required = false) String vnp_SecureHash) {
+    public ResponseEntity<Map<String, Object>> verifyVnPayPayment(@RequestParam Map<String, String> params) {
         
         Map<String, Object> response = new HashMap<>();
         
+        long start = System.nanoTime();
         try {
-            System.out.println("VNPay callback received - OrderInfo: " + vnp_OrderInfo);
-            System.out.println("VNPay callback - Direct order ID param: " + orderId);
-            System.out.println("VNPay response code: " + vnp_ResponseCode);
+            String vnp_ResponseCode = params.get("vnp_ResponseCode");
+            Long vnpAmount = parseLong(params.get("vnp_Amount"));
             
-            // Parse out the order ID from the order info if not provided directly
-            Long originalOrderId;
-            if (orderId != null && !orderId.isEmpty()) {
-                originalOrderId = Long.parseLong(orderId);
-            } else if (vnp_OrderInfo != null && vnp_OrderInfo.contains("#")) {
-                // Extract from VNPay order info - format "Payment for order #xx"
-                String[] parts = vnp_OrderInfo.split("#");
-                originalOrderId = Long.parseLong(parts[1].trim());
-            } else {
-                // Fallback to query param
-                originalOrderId = 0L;
+            // nothing in the return is trusted until its hash checks out
+            boolean validHash = vnPayPaymentService.verifySecureHash(params);
+            if (!validHash) {
+                paymentAttemptService.record(VnPayPaymentService.METHOD, PaymentAttemptKind.REDIRECT, parseLong(params.get("vnp_TxnRef")),
+                        vnpAmount == null ? null : vnpAmount / 100, params.get("vnp_TransactionNo"), false, false, start, "Invalid signature");
                 response.put("success", false);
-                response.put("message", "Order ID not found in parameters");
+                response.put("message", "Invalid VNPay signature");
                 return ResponseEntity.ok(response);
             }
             
-            // Get the order
-            Order order = orderRepository.findOrderById(originalOrderId);
-            
-            if (order == null) {
-                response.put("success", false);
-                response.put("message", "Order not found: " + originalOrderId);
-                return ResponseEntity.ok(response);
-            }
+            // vnp_TxnRef is the signed order id
+            long originalOrderId = Long.parseLong(params.get("vnp_TxnRef"));
             
             // VNPay Payment Verification Guide:
             // 1. '00' means success in VNPay
@@ -142,32 +178,43 @@ public class PaymentAPI {
             //    - Use any name, any future expiry date
             //    - For OTP code in sandbox, use any 6 digits (e.g., 123456)
             
-            // '00' means success in VNPay
-            if ("00".equals(vnp_ResponseCode)) {
-                // Update order status to PAID
-                orderService.updateStatus(OrderStatus.PAID, order.getId());
-                
+            // '00' means success in VNPay; vnp_Amount is in hundredths of a dong
+            boolean paid = "00".equals(vnp_ResponseCode) && vnpAmount != null
+                    && orderService.markPaid(originalOrderId, vnpAmount / 100);
+            paymentAttemptService.record(VnPayPaymentService.METHOD, PaymentAttemptKind.REDIRECT, originalOrderId,
+                    vnpAmount == null ? null : vnpAmount / 100, params.get("vnp_TransactionNo"), true, paid, start,
+                    "Response code " + vnp_ResponseCode);
+            
+            // read once, after the update
+            Order order = orderRepository.findOrderById(originalOrderId);
+            if (order == null) {
+                response.put("success", false);
+                response.put("message", "Order not found: " + originalOrderId);
+                return ResponseEntity.ok(response);
+            }
+            
+            if (paid) {
                 response.put("success", true);
                 response.put("message", "Payment verified successfully");
                 response.put("order", order);
                 
                 // Add payment details
                 Map<String, String> paymentDetails = new HashMap<>();
-                paymentDetails.put("bankCode", vnp_BankCode != null ? vnp_BankCode : "MBBANK");
-                paymentDetails.put("cardType", vnp_CardType != null ? vnp_CardType : "ATM");
-                paymentDetails.put("amount", vnp_Amount != null ? vnp_Amount : String.valueOf(order.getTotal()));
-                paymentDetails.put("transactionNo", vnp_TransactionNo != null ? vnp_TransactionNo : "N/A");
-                paymentDetails.put("transactionDate", vnp_PayDate != null ? vnp_PayDate : "N/A");
+                paymentDetails.put("bankCode", params.getOrDefault("vnp_BankCode", "MBBANK"));
+                paymentDetails.put("cardType", params.getOrDefault("vnp_CardType", "ATM"));
+                paymentDetails.put("amount", params.getOrDefault("vnp_Amount", String.valueOf(order.getTotal())));
+                paymentDetails.put("transactionNo", params.getOrDefault("vnp_TransactionNo", "N/A"));
+                paymentDetails.put("transactionDate", params.getOrDefault("vnp_PayDate", "N/A"));
                 paymentDetails.put("merchantAccount", "MB Bank - 0838500046");
                 
                 response.put("paymentDetails", paymentDetails);
                 response.put("verificationGuide", "When testing in sandbox, payment verification is simulated. In production, verify real transfers with your actual MB Bank account.");
             } else {
-                // Payment failed or pending
-                orderService.updateStatus(OrderStatus.IN_PROCESS, order.getId());
-                
+                // Payment failed, pending, or does not match the order: the order stays as it is
                 response.put("success", false);
-                response.put("message", "Payment verification failed. Response code: " + vnp_ResponseCode);
+                response.put("message", "00".equals(vnp_ResponseCode)
+                        ? "Payment does not match order #" + originalOrderId + " or the order can no longer be paid"
+                        : "Payment verification failed. Response code: " + vnp_ResponseCode);
                 response.put("order", order);
                 
                 // Add sandbox testing guide for failed payments
@@ -185,6 +232,14 @@ public class PaymentAPI {
         }
     }
     
+    private static Long parseLong(String value) {
+        try {
+            return value == null ? null : Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
     /**
      * How to Verify VNPay Payments in Sandbox vs Production:
      * 
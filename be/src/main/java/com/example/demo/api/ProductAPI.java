@@ -1,15 +1,24 @@
 package com.example.demo.api;
 
-import com.example.demo.entity.Product;
 import com.example.demo.entity.request.ProductRequest;
+import com.example.demo.entity.response.ProductBatchResponse;
+import com.example.demo.entity.response.ProductPageResponse;
+import com.example.demo.entity.response.ProductResponse;
+import com.example.demo.entity.response.RatingSummaryResponse;
+import com.example.demo.entity.response.RoutineResponse;
 import com.example.demo.enums.RoutineStep;
 import com.example.demo.enums.SuitableType;
+import com.example.demo.service.CatalogVersion;
 import com.example.demo.service.ProductService;
+import com.example.demo.service.RatingService;
+import com.example.demo.service.RoutineService;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -21,33 +30,116 @@ public class ProductAPI {
     @Autowired
     private ProductService productService;
 
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    @Autowired
+    private RatingService ratingService;
+
+    @Autowired
+    private RoutineService routineService;
+
     // GET all products
     @GetMapping
-    public ResponseEntity<List<Product>> getAllProducts(
+    public ResponseEntity<List<ProductResponse>> getAllProducts(
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) List<SuitableType> suitableTypes,
+            @RequestParam(required = false) RoutineStep routineStep, // Added routineStep filter
+            @RequestParam(required = false) String sort, // newest, price_low, price_high, name, rating, relevance
+            WebRequest request) {
+        String etag = catalogVersion.etag();
+        if (request.checkNotModified(etag)) {
+            return null; // 304, nothing is read or serialized
+        }
+        return cached(etag).body(productService.getAllProducts(categoryId, name, minPrice, maxPrice, suitableTypes, routineStep, sort));
+    }
+
+    // GET one page of products, pass nextCursor back to get the following page
+    @GetMapping("/page")
+    public ResponseEntity<ProductPageResponse> getProductPage(
             @RequestParam(required = false) Long categoryId,
             @RequestParam(required = false) String name,
             @RequestParam(required = false) Double minPrice,
             @RequestParam(required = false) Double maxPrice,
             @RequestParam(required = false) List<SuitableType> suitableTypes,
-            @RequestParam(required = false) RoutineStep routineStep) { // Added routineStep filter
-        return ResponseEntity.ok(productService.getAllProducts(categoryId, name, minPrice, maxPrice, suitableTypes, routineStep));
+            @RequestParam(required = false) RoutineStep routineStep,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            WebRequest request) {
+        String etag = catalogVersion.etag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return cached(etag).body(productService.getProductPage(categoryId, name, minPrice, maxPrice, suitableTypes, routineStep, sort, cursor, size));
+    }
+
+    // GET a full routine (cleanser -> toner -> serum -> moisturizer -> sunscreen) for a skin type
+    @GetMapping("/routine")
+    public ResponseEntity<RoutineResponse> getRoutine(
+            @RequestParam SuitableType suitableType,
+            @RequestParam(required = false) Double budget,
+            @RequestParam(required = false) Long categoryId,
+            WebRequest request) {
+        String etag = catalogVersion.etag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return cached(etag).body(routineService.build(suitableType, budget, categoryId));
+    }
+
+    // GET many products in one round-trip: /batch?ids=3,1,2 answers in that order and lists unknown ids
+    @GetMapping("/batch")
+    public ResponseEntity<ProductBatchResponse> getProductsByIds(@RequestParam List<Long> ids, WebRequest request) {
+        String etag = catalogVersion.etag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return cached(etag).body(productService.getByIds(ids));
+    }
+
+    // POST variant for id lists too long for a query string
+    @PostMapping("/batch")
+    public ResponseEntity<ProductBatchResponse> postProductsByIds(@RequestBody List<Long> ids) {
+        return ResponseEntity.ok(productService.getByIds(ids));
     }
 
     // GET product by ID
     @GetMapping("/{id}")
-    public ResponseEntity<Product> getProductById(@PathVariable Long id) {
-        return productService.getById(id);
+    public ResponseEntity<ProductResponse> getProductById(@PathVariable Long id, WebRequest request) {
+        String etag = catalogVersion.etag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        ResponseEntity<ProductResponse> response = productService.getById(id);
+        if (!response.hasBody()) {
+            return response;
+        }
+        return cached(etag).body(response.getBody());
+    }
+
+    // GET average, count and star histogram of a product's ratings
+    @GetMapping("/{id}/rating-summary")
+    public ResponseEntity<RatingSummaryResponse> getRatingSummary(@PathVariable Long id, WebRequest request) {
+        String etag = catalogVersion.etag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return cached(etag).body(ratingService.getSummary(id));
     }
 
     // POST create a new product
     @PostMapping
-    public ResponseEntity<Product> create(@Valid @RequestBody ProductRequest productRequest) {
+    public ResponseEntity<ProductResponse> create(@Valid @RequestBody ProductRequest productRequest) {
         return ResponseEntity.ok(productService.create(productRequest));
     }
 
     // PUT update an existing product
     @PutMapping("/{id}")
-    public ResponseEntity<Product> update(@PathVariable Long id, @Valid @RequestBody ProductRequest productRequest) {
+    public ResponseEntity<ProductResponse> update(@PathVariable Long id, @Valid @RequestBody ProductRequest productRequest) {
         return productService.update(id, productRequest);
     }
 
@@ -56,4 +148,9 @@ public class ProductAPI {
     public ResponseEntity<Void> delete(@PathVariable Long id) {
         return productService.delete(id);
     }
+
+    // public catalog data: shared caches may store it but must revalidate with the ETag
+    private ResponseEntity.BodyBuilder cached(String etag) {
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache().cachePublic());
+    }
 }
@@ -0,0 +1,53 @@
+package com.example.demo.api;
+
+import com.example.demo.entity.response.ProductImportResponse;
+import com.example.demo.exception.exceptions.ForbiddenException;
+import com.example.demo.service.ProductImportService;
+import com.example.demo.utils.AccountUtils;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+
+// kept off /api/product so that exports are not part of the public product GETs
+@RestController
+@RequestMapping("/api/product-bulk")
+@SecurityRequirement(name = "api")
+public class ProductBulkAPI {
+
+    @Autowired
+    private ProductImportService productImportService;
+
+    @Autowired
+    private AccountUtils accountUtils;
+
+    // POST import products, body is CSV with a header row or NDJSON (one product per line); staff only
+    @PostMapping(value = "/import", consumes = {ProductImportService.CSV, ProductImportService.NDJSON})
+    public ResponseEntity<ProductImportResponse> importProducts(HttpServletRequest request) throws IOException {
+        if (!accountUtils.isStaff()) {
+            throw new ForbiddenException("Only staff can import products");
+        }
+        MediaType contentType = MediaType.parseMediaType(request.getContentType());
+        return ResponseEntity.ok(productImportService.importProducts(request.getInputStream(),
+                contentType.getType() + "/" + contentType.getSubtype()));
+    }
+
+    // GET export all products, format=csv (default) or ndjson; staff only
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportProducts(@RequestParam(defaultValue = "csv") String format) {
+        if (!accountUtils.isStaff()) {
+            throw new ForbiddenException("Only staff can export products");
+        }
+        String contentType = format.equalsIgnoreCase("ndjson") ? ProductImportService.NDJSON : ProductImportService.CSV;
+        String fileName = format.equalsIgnoreCase("ndjson") ? "products.ndjson" : "products.csv";
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(contentType + ";charset=UTF-8"))
+                .header("Content-Disposition", "attachment; filename=\"" + fileName + "\"")
+                .body(out -> productImportService.exportProducts(out, contentType));
+    }
+}
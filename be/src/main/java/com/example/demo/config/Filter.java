@@ -53,6 +53,22 @@ public class Filter extends OncePerRequestFilter {
             return true; // public api
         }
 
+        if(method.equals("POST") && patchMatch.match("/api/product/batch", uri)){
+            return true; // same data as the public GET /api/product/batch
+        }
+
+        if(method.equals("POST") && patchMatch.match("/api/cart/quote", uri)){
+            return true; // guests price their local cart before logging in
+        }
+
+        if(method.equals("POST") && patchMatch.match("/api/payment/notify", uri)){
+            return true; // MoMo calls it server to server, the signature is checked instead
+        }
+
+        if(method.equals("GET") && patchMatch.match("/api/media/**", uri)){
+            return true; // images are loaded by <img> tags, which send no token
+        }
+
         return PUBLIC_API.stream().anyMatch(item -> patchMatch.match(item, uri));
     }
 
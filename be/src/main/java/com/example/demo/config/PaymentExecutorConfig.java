@@ -0,0 +1,26 @@
+package com.example.demo.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class PaymentExecutorConfig {
+
+    // payment gateway calls run here instead of on Tomcat workers; when it is full checkouts fail fast
+    @Bean
+    public ThreadPoolTaskExecutor paymentExecutor(@Value("${payment.executor.threads:8}") int threads,
+                                                  @Value("${payment.executor.queue:100}") int queue) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queue);
+        executor.setThreadNamePrefix("payment-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.initialize();
+        return executor;
+    }
+}
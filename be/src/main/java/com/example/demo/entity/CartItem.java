@@ -0,0 +1,29 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+// one line of an account's saved cart; see CartService
+@Entity
+@Table(name = "cart_item", uniqueConstraints = @UniqueConstraint(
+        name = "uk_cart_item_account_product", columnNames = {"account_id", "product_id"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CartItem {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    @Column(name = "account_id", nullable = false)
+    long accountId;
+
+    @Column(name = "product_id", nullable = false)
+    long productId;
+
+    @Column(nullable = false)
+    int quantity;
+}
@@ -0,0 +1,46 @@
+package com.example.demo.entity;
+
+import com.example.demo.enums.IdempotencyStatus;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.Date;
+
+// one checkout per (account, Idempotency-Key); see IdempotencyService
+@Entity
+@Table(name = "idempotency_key", uniqueConstraints = @UniqueConstraint(
+        name = "uk_idempotency_account_key", columnNames = {"account_id", "idempotency_key"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class IdempotencyRecord {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    @Column(name = "account_id", nullable = false)
+    long accountId;
+
+    @Column(name = "idempotency_key", nullable = false, length = 100)
+    String idempotencyKey;
+
+    // SHA-256 of the order request, a reused key must come with the same request
+    @Column(nullable = false, length = 64)
+    String fingerprint;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    IdempotencyStatus status;
+
+    Long orderId;
+
+    @Column(length = 2048)
+    String paymentUrl;
+
+    String paymentMethod;
+
+    Date createAt;
+}
@@ -13,7 +13,12 @@ import java.util.Date;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+// the admin listing pages by id desc within a status, an account or a date range
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_status_id", columnList = "status, id"),
+        @Index(name = "idx_orders_account_id", columnList = "account_id, id"),
+        @Index(name = "idx_orders_create_at_id", columnList = "create_at, id")
+})
 @Getter
 @Setter
 public class Order {
@@ -26,6 +31,11 @@ public class Order {
     public float total;
     public OrderStatus status = OrderStatus.IN_PROCESS;
 
+    // bumped by every status change, so a stale save fails instead of overwriting it
+    @Version
+    @Column(columnDefinition = "bigint not null default 0")
+    public long version;
+
     @ManyToOne
     @JoinColumn(name = "account_id")
     public Account account;
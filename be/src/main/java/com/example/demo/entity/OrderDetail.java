@@ -9,6 +9,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Table(indexes = @Index(name = "idx_order_detail_stock_pending", columnList = "stock_pending"))
 @Getter
 @Setter
 public class OrderDetail {
@@ -19,6 +20,11 @@ public class OrderDetail {
     public int quantity;
     public float price;
 
+    // reserved from a hot-SKU counter, product.quantity not decremented yet (see HotStockService)
+    @JsonIgnore
+    @Column(columnDefinition = "bit not null default 0")
+    boolean stockPending;
+
     @ManyToOne
     @JoinColumn(name = "order_id")
     @JsonIgnore
@@ -0,0 +1,50 @@
+package com.example.demo.entity;
+
+import com.example.demo.enums.PaymentAttemptKind;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.Date;
+
+// append-only ledger of everything exchanged with the payment gateways; see PaymentAttemptService
+@Entity
+@Table(name = "payment_attempt", indexes = {
+        @Index(name = "idx_payment_attempt_order", columnList = "order_id, id"),
+        @Index(name = "idx_payment_attempt_create_at", columnList = "create_at")})
+@Getter
+@Setter
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class PaymentAttempt {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    @Column(name = "order_id")
+    Long orderId;
+
+    @Column(nullable = false, length = 20)
+    String gateway;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    PaymentAttemptKind kind;
+
+    Long amount;  // VND
+
+    @Column(length = 64)
+    String transId;
+
+    Boolean signatureValid;  // null where nothing is signed, e.g. our own requests
+
+    boolean success;
+
+    long latencyMs;
+
+    String message;
+
+    @Column(name = "create_at")
+    Date createAt;
+}
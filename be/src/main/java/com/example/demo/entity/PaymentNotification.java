@@ -0,0 +1,47 @@
+package com.example.demo.entity;
+
+import com.example.demo.enums.PaymentNotificationStatus;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.Date;
+
+// inbox of gateway payment notifications, one row per (gateway, transaction); see PaymentNotificationService
+@Entity
+@Table(name = "payment_notification",
+        uniqueConstraints = @UniqueConstraint(name = "uk_payment_notification_trans", columnNames = {"gateway", "trans_id"}),
+        indexes = @Index(name = "idx_payment_notification_status", columnList = "status, id"))
+@Getter
+@Setter
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class PaymentNotification {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    @Column(nullable = false, length = 20)
+    String gateway;
+
+    @Column(name = "trans_id", nullable = false, length = 64)
+    String transId;
+
+    @Column(name = "order_id", nullable = false)
+    long orderId;
+
+    long amount;
+
+    int resultCode;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    PaymentNotificationStatus status;
+
+    String note;
+
+    Date receivedAt;
+
+    Date processedAt;
+}
@@ -1,5 +1,7 @@
 package com.example.demo.entity;
 
+import com.example.demo.enums.RoutineStep;
+import com.example.demo.enums.SuitableType;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Min;
@@ -57,6 +59,7 @@ public class Product {
     private RoutineStep routineStep;
 
     @OneToMany(mappedBy = "product", cascade =  CascadeType.ALL)
+    @JsonIgnore
     List<Rating> ratings = new ArrayList<>();
 
     public Product(long id, String name, float price, int quantity, String image, String code, boolean isDeleted, Category category) {
@@ -0,0 +1,36 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+// running totals per product, maintained by RatingService on every new rating
+@Entity
+@Table(name = "product_rating_summary")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ProductRatingSummary {
+
+    @Id
+    @Column(name = "product_id")
+    long productId;
+
+    long ratingCount;
+    long ratingSum;
+
+    long star1;
+    long star2;
+    long star3;
+    long star4;
+    long star5;
+
+    public double getAverage() {
+        return ratingCount == 0 ? 0 : (double) ratingSum / ratingCount;
+    }
+}
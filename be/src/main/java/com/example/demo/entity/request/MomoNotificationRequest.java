@@ -0,0 +1,21 @@
+package com.example.demo.entity.request;
+
+import lombok.Data;
+
+// body of a MoMo IPN call (POST momo.ipn-url)
+@Data
+public class MomoNotificationRequest {
+    String partnerCode;
+    String orderId;
+    String requestId;
+    Long amount;
+    String orderInfo;
+    String orderType;
+    Long transId;
+    Integer resultCode;
+    String message;
+    String payType;
+    Long responseTime;
+    String extraData;
+    String signature;
+}
@@ -0,0 +1,12 @@
+package com.example.demo.entity.request;
+
+import com.example.demo.enums.OrderStatus;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class OrderStatusRequest {
+    List<Long> ids;
+    OrderStatus status;
+}
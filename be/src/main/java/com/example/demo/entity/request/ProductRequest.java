@@ -83,4 +83,20 @@ public class ProductRequest {
 
     private List<SuitableType> suitableTypes;
     private RoutineStep routineStep;
+
+    public List<SuitableType> getSuitableTypes() {
+        return suitableTypes;
+    }
+
+    public void setSuitableTypes(List<SuitableType> suitableTypes) {
+        this.suitableTypes = suitableTypes;
+    }
+
+    public RoutineStep getRoutineStep() {
+        return routineStep;
+    }
+
+    public void setRoutineStep(RoutineStep routineStep) {
+        this.routineStep = routineStep;
+    }
 }
@@ -0,0 +1,31 @@
+package com.example.demo.entity.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class CartQuoteResponse {
+    long catalogVersion; // prices as of this catalog version, stock is read live
+    List<Line> lines = new ArrayList<>();
+    float total;         // sum of the lines that can be ordered
+    boolean valid;       // true when checkout would accept every line as it is
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Line {
+        long productId;
+        String name;
+        String image;
+        float price;     // unit price checkout will charge
+        int quantity;
+        int available;   // units in stock
+        float lineTotal;
+        String problem;  // null when the line can be ordered
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.demo.entity.response;
+
+import com.example.demo.enums.SuitableType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CategoryResponse {
+    long id;
+    String name;
+    long productCount; // non-deleted products only
+    Float minPrice;    // null when the category has no products
+    Float maxPrice;
+    Map<SuitableType, Long> suitableTypeCounts;
+}
@@ -0,0 +1,14 @@
+package com.example.demo.entity.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HotStockResponse {
+    long productId;
+    int available; // units left in the in-memory counter
+    boolean hot;
+}
@@ -0,0 +1,15 @@
+package com.example.demo.entity.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MediaResponse {
+    String id;        // <sha-256>.<ext>, the same bytes always get the same id
+    String url;
+    String thumbUrl;  // falls back to the original until the variant is generated
+    String mediumUrl;
+}
@@ -0,0 +1,15 @@
+package com.example.demo.entity.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderHistoryPageResponse {
+    List<OrderHistoryResponse> items;
+    Long nextCursor; // id to pass as cursor for the next page, null on the last page
+}
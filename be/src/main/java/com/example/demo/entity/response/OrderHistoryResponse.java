@@ -0,0 +1,33 @@
+package com.example.demo.entity.response;
+
+import com.example.demo.enums.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderHistoryResponse {
+    long id;
+    Date createAt;
+    float total;
+    OrderStatus status;
+    List<Line> orderDetails = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Line {
+        long id;
+        long productId;
+        String productName;
+        String productImage;
+        float price; // unit price when the order was placed
+        int quantity;
+    }
+}
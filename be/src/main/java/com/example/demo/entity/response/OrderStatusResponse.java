@@ -0,0 +1,17 @@
+package com.example.demo.entity.response;
+
+import com.example.demo.enums.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderStatusResponse {
+    OrderStatus status;
+    List<Long> updated;
+    List<Long> skipped; // unknown ids, or orders whose status does not allow the transition
+}
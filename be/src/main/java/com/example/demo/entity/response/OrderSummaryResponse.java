@@ -0,0 +1,22 @@
+package com.example.demo.entity.response;
+
+import com.example.demo.enums.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderSummaryResponse {
+    long id;
+    Date createAt;
+    float total;
+    OrderStatus status;
+    Long accountId;
+    String accountName;
+    String accountEmail;
+    int itemCount; // order lines, not units
+}
@@ -0,0 +1,20 @@
+package com.example.demo.entity.response;
+
+import com.example.demo.enums.PaymentAttemptKind;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentGatewayStatsResponse {
+    String gateway;
+    PaymentAttemptKind kind;
+    long attempts;
+    long succeeded;
+    double successRate;     // 0..1
+    long invalidSignatures;
+    double avgLatencyMs;
+    long maxLatencyMs;
+}
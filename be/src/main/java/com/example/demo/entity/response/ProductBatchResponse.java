@@ -0,0 +1,15 @@
+package com.example.demo.entity.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductBatchResponse {
+    List<ProductResponse> items; // one per requested id, in request order; null where the id is unknown
+    List<Long> missing;          // requested ids that matched no product
+}
@@ -0,0 +1,26 @@
+package com.example.demo.entity.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class ProductImportResponse {
+    long rows;       // data rows read, header excluded
+    long imported;   // products inserted or updated, a code repeated within a batch counts once
+    long failed;
+    List<RowError> errors = new ArrayList<>(); // first errors only, see failed for the total
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+        long row;
+        String code;
+        String message;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.demo.entity.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductPageResponse {
+    List<ProductResponse> items;
+    String nextCursor; // null on the last page
+}
@@ -0,0 +1,39 @@
+package com.example.demo.entity.response;
+
+import com.example.demo.enums.RoutineStep;
+import com.example.demo.enums.SuitableType;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class ProductResponse {
+    long id;
+    String name;
+    float price;
+    int quantity;
+    String image;
+    String code;
+
+    @JsonProperty("isDeleted")
+    boolean deleted;
+
+    CategorySummary category;
+    List<SuitableType> suitableTypes;
+    RoutineStep routineStep;
+
+    double rating;     // average stars, 0 when not rated yet
+    long reviewCount;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CategorySummary {
+        long id;
+        String name;
+    }
+}
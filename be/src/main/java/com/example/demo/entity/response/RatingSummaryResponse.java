@@ -0,0 +1,17 @@
+package com.example.demo.entity.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RatingSummaryResponse {
+    long productId;
+    long count;
+    double average;
+    Map<Integer, Long> histogram; // stars (1-5) -> number of ratings
+}
@@ -0,0 +1,19 @@
+package com.example.demo.entity.response;
+
+import com.example.demo.enums.PaymentMismatch;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+public class ReconciliationResponse {
+    String file;
+    String report;   // CSV of the mismatched lines, next to the processed file
+    long rows;       // settlement lines read, header excluded
+    long matched;
+    long mismatched;
+    Map<PaymentMismatch, Long> mismatches = new EnumMap<>(PaymentMismatch.class);
+}
@@ -0,0 +1,27 @@
+package com.example.demo.entity.response;
+
+import com.example.demo.enums.RoutineStep;
+import com.example.demo.enums.SuitableType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RoutineResponse {
+    SuitableType suitableType;
+    Double budget;
+    float totalPrice;
+    List<Step> steps;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Step {
+        RoutineStep step;
+        ProductResponse product; // null when nothing fits this step
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.demo.enums;
+
+import java.util.Locale;
+
+public enum MediaVariant {
+    ORIGINAL(0),
+    THUMB(200),   // product grids, review lists
+    MEDIUM(600);  // product detail
+
+    private final int maxSize; // longest side in pixels, 0 = untouched
+
+    MediaVariant(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public static MediaVariant from(String value) {
+        if (value == null || value.isBlank()) {
+            return ORIGINAL;
+        }
+        try {
+            return MediaVariant.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported variant: " + value);
+        }
+    }
+}
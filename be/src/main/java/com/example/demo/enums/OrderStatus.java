@@ -1,7 +1,36 @@
 package com.example.demo.enums;
 
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
 public enum OrderStatus {
     IN_PROCESS,
     PAID,
-    CANCEL
+    CANCEL;
+
+    // allowed transitions; PAID and CANCEL are final
+    private static final Map<OrderStatus, Set<OrderStatus>> TRANSITIONS = new EnumMap<>(OrderStatus.class);
+
+    static {
+        TRANSITIONS.put(IN_PROCESS, EnumSet.of(PAID, CANCEL));
+        TRANSITIONS.put(PAID, EnumSet.noneOf(OrderStatus.class));
+        TRANSITIONS.put(CANCEL, EnumSet.noneOf(OrderStatus.class));
+    }
+
+    public boolean canTransitionTo(OrderStatus next) {
+        return TRANSITIONS.get(this).contains(next);
+    }
+
+    // statuses an order may be in to move to the target
+    public static Set<OrderStatus> sourcesOf(OrderStatus target) {
+        Set<OrderStatus> sources = EnumSet.noneOf(OrderStatus.class);
+        for (OrderStatus status : values()) {
+            if (status.canTransitionTo(target)) {
+                sources.add(status);
+            }
+        }
+        return sources;
+    }
 }
@@ -0,0 +1,7 @@
+package com.example.demo.enums;
+
+public enum PaymentAttemptKind {
+    REQUEST,    // we asked the gateway for a payment URL
+    REDIRECT,   // the customer's browser came back from the gateway
+    CALLBACK    // the gateway notified us server to server (IPN)
+}
@@ -0,0 +1,10 @@
+package com.example.demo.enums;
+
+// why a settlement line does not agree with the orders table
+public enum PaymentMismatch {
+    INVALID_LINE,       // missing or unreadable order id or amount
+    ORDER_NOT_FOUND,
+    AMOUNT_MISMATCH,    // settled amount differs from the order total
+    NOT_MARKED_PAID,    // settled as paid, order not PAID
+    PAID_NOT_SETTLED    // order PAID, settlement says the payment failed
+}
@@ -0,0 +1,8 @@
+package com.example.demo.enums;
+
+public enum PaymentNotificationStatus {
+    RECEIVED,   // stored, not applied yet
+    APPLIED,    // the order was marked PAID by this notification
+    SKIPPED,    // nothing to do: failed payment, or the order was already paid or cancelled
+    REJECTED    // unknown order or an amount that does not match the order
+}
@@ -0,0 +1,51 @@
+package com.example.demo.enums;
+
+import java.util.Map;
+
+public enum ProductSort {
+    NEWEST,
+    PRICE_LOW,
+    PRICE_HIGH,
+    NAME,
+    RATING,
+    RELEVANCE; // only meaningful together with a search query
+
+    // names the storefront uses for an existing order ("Most Popular" is ranked by rating)
+    private static final Map<String, ProductSort> ALIASES = Map.of("POPULARITY", RATING);
+
+    // accepts the values used by the storefront, e.g. "price_low"
+    public static ProductSort from(String value) {
+        if (value == null || value.isBlank()) {
+            return NEWEST;
+        }
+        String name = value.trim().toUpperCase();
+        ProductSort alias = ALIASES.get(name);
+        if (alias != null) {
+            return alias;
+        }
+        try {
+            return ProductSort.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported sort: " + value);
+        }
+    }
+
+    // searches rank by relevance unless another order is asked for
+    public static ProductSort from(String value, String query) {
+        boolean hasQuery = query != null && !query.isBlank();
+        if (value == null || value.isBlank()) {
+            return hasQuery ? RELEVANCE : NEWEST;
+        }
+        ProductSort sort = from(value);
+        return sort == RELEVANCE && !hasQuery ? NEWEST : sort;
+    }
+
+    // the unpaged GET always ignored sort, so an unknown value there gets the default order instead of a 400
+    public static ProductSort orDefault(String value, String query) {
+        try {
+            return from(value, query);
+        } catch (IllegalArgumentException e) {
+            return from(null, query);
+        }
+    }
+}
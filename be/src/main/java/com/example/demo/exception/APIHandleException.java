@@ -2,8 +2,12 @@ package com.example.demo.exception;
 
 import com.example.demo.exception.exceptions.AuthorizeException;
 import com.example.demo.exception.exceptions.BookingException;
+import com.example.demo.exception.exceptions.ForbiddenException;
+import com.example.demo.exception.exceptions.IdempotencyException;
 import com.example.demo.exception.exceptions.NotFoundException;
+import com.example.demo.exception.exceptions.OrderStatusException;
 import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -11,6 +15,8 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
 import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 
 @RestControllerAdvice
 public class APIHandleException {
@@ -44,6 +50,11 @@ public class APIHandleException {
         return new ResponseEntity(exception.getMessage(),HttpStatus.UNAUTHORIZED);
     }
 
+    @ExceptionHandler(ForbiddenException.class)
+    public ResponseEntity handleForbiddenException(ForbiddenException exception){
+        return new ResponseEntity(exception.getMessage(),HttpStatus.FORBIDDEN);
+    }
+
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity handleRuntimeException(RuntimeException exception){
         return new ResponseEntity(exception.getMessage(), HttpStatus.BAD_REQUEST);
@@ -54,6 +65,32 @@ public class APIHandleException {
         return new ResponseEntity(exception.getMessage(),HttpStatus.NOT_FOUND);
     }
 
+    @ExceptionHandler(IdempotencyException.class)
+    public ResponseEntity handleIdempotencyException(IdempotencyException exception){
+        return new ResponseEntity(exception.getMessage(), exception.getStatus());
+    }
+
+    @ExceptionHandler(OrderStatusException.class)
+    public ResponseEntity handleOrderStatusException(OrderStatusException exception){
+        return new ResponseEntity(exception.getMessage(), HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity handleOptimisticLockingFailure(ObjectOptimisticLockingFailureException exception){
+        return new ResponseEntity("The record was changed by another request, reload and retry", HttpStatus.CONFLICT);
+    }
+
+    // the order is kept; retrying with the same Idempotency-Key fetches its payment link
+    @ExceptionHandler(TimeoutException.class)
+    public ResponseEntity handleTimeoutException(TimeoutException exception){
+        return new ResponseEntity("Payment gateway did not answer in time, please retry", HttpStatus.GATEWAY_TIMEOUT);
+    }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity handleRejectedExecutionException(RejectedExecutionException exception){
+        return new ResponseEntity("Too many checkouts in progress, please retry", HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     @ExceptionHandler(BookingException.class)
     public ResponseEntity handleBookingException(BookingException exception){
         return new ResponseEntity(exception.getMessage(),HttpStatus.BAD_REQUEST);
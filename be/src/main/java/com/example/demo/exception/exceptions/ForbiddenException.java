@@ -0,0 +1,8 @@
+package com.example.demo.exception.exceptions;
+
+// signed in, but the account's role may not do this
+public class ForbiddenException extends RuntimeException {
+    public ForbiddenException(String message) {
+        super(message);
+    }
+}
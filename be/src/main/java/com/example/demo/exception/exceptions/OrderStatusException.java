@@ -0,0 +1,8 @@
+package com.example.demo.exception.exceptions;
+
+// an order cannot move to the requested status, or another update got there first
+public class OrderStatusException extends RuntimeException {
+    public OrderStatusException(String message) {
+        super(message);
+    }
+}
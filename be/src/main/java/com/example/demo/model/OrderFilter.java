@@ -0,0 +1,23 @@
+package com.example.demo.model;
+
+import com.example.demo.enums.OrderStatus;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class OrderFilter {
+    OrderStatus status;
+    LocalDate from; // inclusive
+    LocalDate to;   // inclusive
+    Long accountId;
+    Double minTotal;
+    Double maxTotal;
+}
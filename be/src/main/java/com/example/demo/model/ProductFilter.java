@@ -0,0 +1,24 @@
+package com.example.demo.model;
+
+import com.example.demo.enums.RoutineStep;
+import com.example.demo.enums.SuitableType;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ProductFilter {
+    Long categoryId;
+    String name;
+    Double minPrice;
+    Double maxPrice;
+    List<SuitableType> suitableTypes; // match any of the given types
+    RoutineStep routineStep;
+}
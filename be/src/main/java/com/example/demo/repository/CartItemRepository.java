@@ -0,0 +1,11 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.CartItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface CartItemRepository extends JpaRepository<CartItem, Long> {
+
+    List<CartItem> findByAccountIdOrderById(long accountId);
+}
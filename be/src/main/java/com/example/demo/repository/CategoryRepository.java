@@ -3,7 +3,11 @@ package com.example.demo.repository;
 import com.example.demo.entity.Category;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.List;
+
 public interface CategoryRepository extends JpaRepository<Category, Long> {
 
     public Category findCategoryById(long id);
+
+    public List<Category> findCategoriesByIsDeletedFalse();
 }
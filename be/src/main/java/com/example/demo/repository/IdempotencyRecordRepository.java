@@ -0,0 +1,11 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, Long> {
+
+    Optional<IdempotencyRecord> findByAccountIdAndIdempotencyKey(long accountId, String idempotencyKey);
+}
@@ -1,7 +1,16 @@
 package com.example.demo.repository;
 
 import com.example.demo.entity.OrderDetail;
+import com.example.demo.enums.OrderStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
 
 public interface OrderDetailRepository extends JpaRepository<OrderDetail , Long> {
+
+    // (productId, units) over the order lines of every order in the given status
+    @Query("SELECT d.product.id, SUM(d.quantity) FROM OrderDetail d WHERE d.order.status = :status GROUP BY d.product.id")
+    List<Object[]> sumQuantityByProduct(@Param("status") OrderStatus status);
 }
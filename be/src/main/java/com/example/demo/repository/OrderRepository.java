@@ -1,8 +1,10 @@
 package com.example.demo.repository;
 
 import com.example.demo.entity.Order;
+import com.example.demo.enums.OrderStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
@@ -10,6 +12,11 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
 
     List<Order> findAllByAccountId(Long accountId);
     Order findOrderById(long id);
+
+    // (id, createAt) of every order in the status
+    @Query("SELECT o.id, o.createAt FROM Order o WHERE o.status = :status")
+    List<Object[]> findIdAndCreateAtByStatus(@Param("status") OrderStatus status);
+
     @Query(value = "SELECT CONCAT(YEAR(o.create_at), '-', LPAD(MONTH(o.create_at), 2, '0')) AS month_year, " +
             "COALESCE(SUM(o.total), 0) AS revenue " +
             "FROM orders o " +
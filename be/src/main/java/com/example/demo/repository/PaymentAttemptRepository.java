@@ -0,0 +1,11 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.PaymentAttempt;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface PaymentAttemptRepository extends JpaRepository<PaymentAttempt, Long> {
+
+    List<PaymentAttempt> findByOrderIdOrderById(long orderId);
+}
@@ -0,0 +1,36 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.ProductRatingSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface ProductRatingSummaryRepository extends JpaRepository<ProductRatingSummary, Long> {
+
+    // adds one rating in a single atomic statement, creating the row on the first rating
+    @Modifying
+    @Query(value = "INSERT INTO product_rating_summary " +
+            "(product_id, rating_count, rating_sum, star1, star2, star3, star4, star5) " +
+            "VALUES (:productId, 1, :rating, :rating = 1, :rating = 2, :rating = 3, :rating = 4, :rating = 5) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "rating_count = rating_count + 1, " +
+            "rating_sum = rating_sum + VALUES(rating_sum), " +
+            "star1 = star1 + VALUES(star1), " +
+            "star2 = star2 + VALUES(star2), " +
+            "star3 = star3 + VALUES(star3), " +
+            "star4 = star4 + VALUES(star4), " +
+            "star5 = star5 + VALUES(star5)",
+            nativeQuery = true)
+    int addRating(@Param("productId") long productId, @Param("rating") int rating);
+
+    // one-off rebuild from the rating table, used when the summary table is first created
+    @Modifying
+    @Query(value = "INSERT INTO product_rating_summary " +
+            "(product_id, rating_count, rating_sum, star1, star2, star3, star4, star5) " +
+            "SELECT r.product_id, COUNT(*), SUM(r.rating), " +
+            "SUM(r.rating = 1), SUM(r.rating = 2), SUM(r.rating = 3), SUM(r.rating = 4), SUM(r.rating = 5) " +
+            "FROM rating r WHERE r.product_id IS NOT NULL GROUP BY r.product_id",
+            nativeQuery = true)
+    int backfill();
+}
@@ -2,11 +2,26 @@ package com.example.demo.repository;
 
 import com.example.demo.entity.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
 
     Product findProductById(long id);
     List<Product> findProductsByIsDeletedFalse();
+
+    // listing projection, one row per (product, suitable type):
+    // id, name, price, quantity, image, code, isDeleted, category id, category name, routineStep, suitableType
+    String LISTING_COLUMNS = "SELECT p.id, p.name, p.price, p.quantity, p.image, p.code, p.isDeleted, " +
+            "c.id, c.name, p.routineStep, t " +
+            "FROM Product p LEFT JOIN p.category c LEFT JOIN p.suitableTypes t ";
+
+    @Query(LISTING_COLUMNS + "WHERE p.isDeleted = false")
+    List<Object[]> findActiveListingRows();
+
+    @Query(LISTING_COLUMNS + "WHERE p.id IN :ids")
+    List<Object[]> findListingRowsByIds(@Param("ids") Collection<Long> ids);
 }
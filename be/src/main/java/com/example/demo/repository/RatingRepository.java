@@ -4,4 +4,6 @@ import com.example.demo.entity.Rating;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 public interface RatingRepository extends JpaRepository<Rating, Long> {
+
+    boolean existsByAccountIdAndProductId(long accountId, long productId);
 }
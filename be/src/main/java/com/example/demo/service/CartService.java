@@ -0,0 +1,144 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.CartItem;
+import com.example.demo.entity.request.OrderDetailRequest;
+import com.example.demo.entity.response.CartQuoteResponse;
+import com.example.demo.entity.response.ProductResponse;
+import com.example.demo.exception.exceptions.NotFoundException;
+import com.example.demo.repository.CartItemRepository;
+import com.example.demo.utils.AccountUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Saved carts and price quotes.
+ *
+ * A quote is priced from {@link ProductCatalogIndex}: prices and stock come from memory,
+ * so totalling a cart costs no database reads however many lines it has. The index holds
+ * the same price and stock checkout charges and reserves, so a valid quote is what
+ * checkout will accept, unless the catalog changes in between (the quote carries the
+ * catalog version it was priced at).
+ */
+@Service
+public class CartService {
+
+    public static final int MAX_LINES = 100;
+
+    @Autowired
+    CartItemRepository cartItemRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    ProductCatalogIndex productCatalogIndex;
+
+    @Autowired
+    CatalogVersion catalogVersion;
+
+    @Autowired
+    AccountUtils accountUtils;
+
+    // GET the current user's cart, priced
+    public CartQuoteResponse getCart() {
+        List<OrderDetailRequest> lines = new ArrayList<>();
+        for (CartItem item : cartItemRepository.findByAccountIdOrderById(accountUtils.getCurrentAccountId())) {
+            lines.add(line(item.getProductId(), item.getQuantity()));
+        }
+        return quote(lines);
+    }
+
+    // PUT the quantity of one product in the current user's cart; 0 removes it
+    public CartQuoteResponse setItem(long productId, int quantity) {
+        if (quantity < 0) {
+            throw new RuntimeException("Quantity must not be negative");
+        }
+        long accountId = accountUtils.getCurrentAccountId();
+        if (quantity == 0) {
+            jdbcTemplate.update("DELETE FROM cart_item WHERE account_id = ? AND product_id = ?", accountId, productId);
+            return getCart();
+        }
+        if (productCatalogIndex.get(productId) == null) {
+            throw new NotFoundException("Product not found: " + productId);
+        }
+        Integer lines = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM cart_item WHERE account_id = ? AND product_id <> ?", Integer.class, accountId, productId);
+        if (lines != null && lines >= MAX_LINES) {
+            throw new RuntimeException("A cart holds at most " + MAX_LINES + " products");
+        }
+        jdbcTemplate.update("INSERT INTO cart_item (account_id, product_id, quantity) VALUES (?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE quantity = VALUES(quantity)", accountId, productId, quantity);
+        return getCart();
+    }
+
+    // DELETE every line of the current user's cart
+    public void clear() {
+        jdbcTemplate.update("DELETE FROM cart_item WHERE account_id = ?", accountUtils.getCurrentAccountId());
+    }
+
+    // called once an order is placed: the ordered products leave the cart
+    public void removeOrdered(long accountId, Collection<Long> productIds) {
+        namedParameterJdbcTemplate.update("DELETE FROM cart_item WHERE account_id = :accountId AND product_id IN (:ids)",
+                new MapSqlParameterSource("accountId", accountId).addValue("ids", productIds));
+    }
+
+    // POST price any list of lines, saved or not
+    public CartQuoteResponse quote(List<OrderDetailRequest> details) {
+        if (details != null && details.size() > MAX_LINES) {
+            throw new RuntimeException("A cart holds at most " + MAX_LINES + " products");
+        }
+        // merged like checkout merges repeated products
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        if (details != null) {
+            for (OrderDetailRequest detail : details) {
+                quantities.merge(detail.getProductId(), detail.getQuantity(), Integer::sum);
+            }
+        }
+
+        CartQuoteResponse quote = new CartQuoteResponse();
+        // read first: a concurrent write can then only make the quote newer than its version
+        quote.setCatalogVersion(catalogVersion.current());
+        quote.setValid(!quantities.isEmpty());
+        float total = 0;
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            ProductResponse product = productCatalogIndex.get(line.getKey());
+            int quantity = line.getValue();
+            CartQuoteResponse.Line quoted;
+            if (product == null) {
+                quoted = new CartQuoteResponse.Line(line.getKey(), null, null, 0, quantity, 0, 0, "Product is no longer available");
+            } else {
+                String problem = null;
+                if (quantity <= 0) {
+                    problem = "Quantity must be positive";
+                } else if (quantity > product.getQuantity()) {
+                    problem = "Only " + Math.max(product.getQuantity(), 0) + " left in stock";
+                }
+                float lineTotal = problem == null ? product.getPrice() * quantity : 0;
+                quoted = new CartQuoteResponse.Line(product.getId(), product.getName(), product.getImage(),
+                        product.getPrice(), quantity, Math.max(product.getQuantity(), 0), lineTotal, problem);
+            }
+            if (quoted.getProblem() != null) {
+                quote.setValid(false);
+            }
+            total += quoted.getLineTotal();
+            quote.getLines().add(quoted);
+        }
+        quote.setTotal(total);
+        return quote;
+    }
+
+    private static OrderDetailRequest line(long productId, int quantity) {
+        OrderDetailRequest detail = new OrderDetailRequest();
+        detail.setProductId(productId);
+        detail.setQuantity(quantity);
+        return detail;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.demo.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonically increasing version of what the catalog endpoints return.
+ * Every product, category or rating write bumps it, and product/category
+ * reads use it as their ETag so unchanged data is answered with 304.
+ *
+ * Stock and sales counters move with every order, so they are left out: a
+ * revalidated listing may show a quantity that is behind, but the cart quote
+ * and checkout always read the live stock.
+ *
+ * Seeded with the boot time so that ETags handed out by a previous process never
+ * match the current one.
+ */
+@Component
+public class CatalogVersion {
+
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+
+    public long current() {
+        return version.get();
+    }
+
+    public long bump() {
+        return version.incrementAndGet();
+    }
+
+    // read it before building the body: a concurrent write can then only make the
+    // body newer than its tag, never older
+    public String etag() {
+        return "\"c" + version.get() + "\"";
+    }
+}
@@ -2,12 +2,16 @@ package com.example.demo.service;
 
 import com.example.demo.entity.Category;
 import com.example.demo.entity.request.CategoryRequest;
+import com.example.demo.entity.response.CategoryResponse;
+import com.example.demo.enums.SuitableType;
 import com.example.demo.repository.CategoryRepository;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,21 +24,64 @@ public class CategoryService {
     @Autowired
     private ModelMapper modelMapper;
 
-    // GET all categories
-    public List<Category> getAll() {
-        return categoryRepository.findAll();
+    @Autowired
+    private ProductCatalogIndex productCatalogIndex;
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    // non-deleted categories, reloaded after the next category write
+    private volatile List<Category> activeCategories;
+
+    // bumped by every category write; a load only publishes if no write happened while it was reading
+    private long categoryWrites;
+
+    // GET all non-deleted categories with their product facets
+    public List<CategoryResponse> getAll() {
+        List<Category> categories = activeCategories;
+        if (categories == null) {
+            long seen;
+            synchronized (this) {
+                seen = categoryWrites;
+            }
+            categories = categoryRepository.findCategoriesByIsDeletedFalse();
+            synchronized (this) {
+                if (categoryWrites == seen) {
+                    activeCategories = categories;
+                }
+            }
+        }
+        List<CategoryResponse> responses = new ArrayList<>(categories.size());
+        for (Category category : categories) {
+            responses.add(toResponse(category));
+        }
+        return responses;
     }
 
     // GET category by ID
-    public ResponseEntity<Category> getById(Long id) {
-        Optional<Category> category = categoryRepository.findById(id);
-        return category.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+    public ResponseEntity<CategoryResponse> getById(Long id) {
+        Optional<Category> category = categoryRepository.findById(id).filter(c -> !c.isDeleted());
+        return category.map(c -> ResponseEntity.ok(toResponse(c))).orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    // counts and prices come from the catalog index, so no product query is needed
+    private CategoryResponse toResponse(Category category) {
+        ProductCatalogIndex.CategoryFacets facets = productCatalogIndex.categoryFacets(category.getId());
+        if (facets == null) {
+            return new CategoryResponse(category.getId(), category.getName(), 0, null, null,
+                    new EnumMap<>(SuitableType.class));
+        }
+        return new CategoryResponse(category.getId(), category.getName(), facets.getProductCount(),
+                facets.getMinPrice(), facets.getMaxPrice(), facets.getSuitableTypeCounts());
     }
 
     // POST create a new category
     public Category create(CategoryRequest categoryRequest) {
         Category category = modelMapper.map(categoryRequest, Category.class);
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        invalidate();
+        catalogVersion.bump();
+        return saved;
     }
 
     // PUT update an existing category
@@ -44,6 +91,8 @@ public class CategoryService {
             Category category = existingCategory.get();
             modelMapper.map(categoryRequest, category);
             categoryRepository.save(category);
+            invalidate();
+            productCatalogIndex.renameCategory(category.getId(), category.getName());
             return ResponseEntity.ok(category);
         } else {
             return ResponseEntity.notFound().build();
@@ -56,9 +105,17 @@ public class CategoryService {
             Category category = categoryRepository.findCategoryById(id);
             category.setDeleted(true);
             categoryRepository.save(category);
+            invalidate();
+            catalogVersion.bump();
             return ResponseEntity.noContent().build();
         } else {
             return ResponseEntity.notFound().build();
         }
     }
+
+    // drop the cached list; a load already in flight may have read the old rows, so it must not publish them
+    private synchronized void invalidate() {
+        categoryWrites++;
+        activeCategories = null;
+    }
 }
\ No newline at end of file
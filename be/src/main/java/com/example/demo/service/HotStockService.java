@@ -0,0 +1,332 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.response.HotStockResponse;
+import com.example.demo.exception.exceptions.NotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory stock for flash-sale products.
+ *
+ * A hot product's stock lives in a striped counter: the units are spread over a few
+ * slots and each reservation CASes the slot picked for its thread, so hundreds of
+ * buyers of one SKU neither share a cache line nor wait for the product row lock.
+ * Order lines reserved here are saved with stockPending = true and product.quantity is
+ * left alone; the flusher later subtracts all pending lines from MySQL in one batch
+ * and clears their flag in the same transaction.
+ *
+ * The pending order lines are the write-behind log: after a crash nothing is lost,
+ * the first flush on startup applies whatever was still pending. Hot marks themselves
+ * are not persisted, so after a restart every product goes through the database path
+ * until it is marked hot again.
+ *
+ * For a hot product, counter + reservations not yet committed + pending lines = quantity.
+ * Everything that moves units between those sides outside a reservation (seeding,
+ * reseeding, cancellations putting units back, the flusher) runs under the product row
+ * lock, and a checkout on the database path re-checks the hot flag after its UPDATE has
+ * taken that lock. Reseeding and unmarking first close the counter and wait for the
+ * reservations in flight to commit or roll back; checkouts of that product fail in the
+ * meantime rather than being counted twice.
+ */
+@Service
+public class HotStockService {
+
+    private static final int STRIPES = Math.max(4, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2));
+    private static final int FLUSH_LIMIT = 5000;
+    private static final long DRAIN_TIMEOUT_MILLIS = 5000;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    ProductCatalogIndex productCatalogIndex;
+
+    private final Map<Long, StripedCounter> counters = new ConcurrentHashMap<>();
+
+    public boolean isHot(long productId) {
+        return counters.containsKey(productId);
+    }
+
+    // POST move a product's stock into memory: seeded with what MySQL still has after pending lines
+    public synchronized HotStockResponse markHot(long productId) {
+        if (!counters.containsKey(productId)) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    // the row lock waits for database-path checkouts already updating it; later ones see the flag
+                    counters.put(productId, new StripedCounter(availableInDatabase(productId)));
+                });
+            } catch (RuntimeException e) {
+                counters.remove(productId);
+                throw e;
+            }
+        }
+        return status(productId);
+    }
+
+    // DELETE hand the product back to the database path once every unit it holds has reached MySQL
+    public synchronized void unmarkHot(long productId) {
+        StripedCounter counter = counters.get(productId);
+        if (counter == null) {
+            return;
+        }
+        drain(productId, counter);
+        flush();
+        counters.remove(productId);
+    }
+
+    // re-reads the stock from MySQL, e.g. after an admin changed the quantity of a hot product
+    public synchronized void reseed(long productId) {
+        StripedCounter counter = counters.get(productId);
+        if (counter == null) {
+            return;
+        }
+        drain(productId, counter);
+        try {
+            transactionTemplate.executeWithoutResult(status -> counter.set(availableInDatabase(productId)));
+        } catch (NotFoundException e) {
+            counter.set(0); // deleted: nothing left to sell
+        } finally {
+            counter.open();
+        }
+    }
+
+    // takes units for a checkout; every successful reservation ends with confirm or abort
+    public boolean reserve(long productId, int quantity) {
+        StripedCounter counter = counters.get(productId);
+        return counter != null && counter.reserve(quantity);
+    }
+
+    // the order holding the reservation committed its pending line
+    public void confirm(long productId) {
+        StripedCounter counter = counters.get(productId);
+        if (counter != null) {
+            counter.settle();
+        }
+    }
+
+    // the order holding the reservation was not saved: the units go back
+    public void abort(long productId, int quantity) {
+        StripedCounter counter = counters.get(productId);
+        if (counter != null) {
+            counter.put(quantity);
+            counter.settle();
+        }
+    }
+
+    // units of a cancelled order go back on sale; call it holding the product row lock
+    public void release(long productId, int quantity) {
+        StripedCounter counter = counters.get(productId);
+        if (counter != null) {
+            counter.put(quantity);
+        }
+    }
+
+    public List<HotStockResponse> getAll() {
+        List<HotStockResponse> responses = new ArrayList<>();
+        for (Long productId : new TreeSet<>(counters.keySet())) {
+            responses.add(status(productId));
+        }
+        return responses;
+    }
+
+    // the first flush runs before traffic, applying whatever a crash left pending
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0)
+    public void recover() {
+        int applied = flush();
+        if (applied > 0) {
+            System.out.println("Applied " + applied + " pending hot-stock order lines");
+        }
+    }
+
+    // write-behind: subtract pending order lines from product.quantity in batches
+    @Scheduled(fixedDelayString = "${inventory.flush-interval-ms:1000}")
+    public int flush() {
+        int total = 0;
+        int applied;
+        do {
+            applied = flushBatch();
+            total += applied;
+        } while (applied == FLUSH_LIMIT);
+        return total;
+    }
+
+    private int flushBatch() {
+        Integer applied = transactionTemplate.execute(status -> {
+            List<Long> ids = new ArrayList<>();
+            Map<Long, Integer> units = new TreeMap<>();
+            jdbcTemplate.query("SELECT id, product_id, quantity FROM order_detail WHERE stock_pending = true " +
+                            "ORDER BY id LIMIT " + FLUSH_LIMIT + " FOR UPDATE",
+                    resultSet -> {
+                        ids.add(resultSet.getLong(1));
+                        units.merge(resultSet.getLong(2), resultSet.getInt(3), Integer::sum);
+                    });
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            List<Map.Entry<Long, Integer>> products = new ArrayList<>(units.entrySet());
+            jdbcTemplate.batchUpdate("UPDATE product SET quantity = quantity - ? WHERE id = ?",
+                    products, products.size(), (statement, product) -> {
+                        statement.setInt(1, product.getValue());
+                        statement.setLong(2, product.getKey());
+                    });
+            namedParameterJdbcTemplate.update("UPDATE order_detail SET stock_pending = false WHERE id IN (:ids)",
+                    new MapSqlParameterSource("ids", ids));
+            // not clamped: a negative quantity is an oversell someone has to look at
+            namedParameterJdbcTemplate.query("SELECT id, quantity FROM product WHERE id IN (:ids) AND quantity < 0",
+                    new MapSqlParameterSource("ids", units.keySet()),
+                    resultSet -> {
+                        System.err.println("Product " + resultSet.getLong(1) + " is oversold, quantity " + resultSet.getInt(2));
+                    });
+            return ids.size();
+        });
+        return applied == null ? 0 : applied;
+    }
+
+    private HotStockResponse status(long productId) {
+        StripedCounter counter = counters.get(productId);
+        return new HotStockResponse(productId, counter == null ? 0 : counter.sum(), counter != null);
+    }
+
+    // call inside a transaction: locks the product row until it commits
+    private int availableInDatabase(long productId) {
+        List<Integer> quantity = jdbcTemplate.queryForList(
+                "SELECT quantity FROM product WHERE id = ? AND is_deleted = false FOR UPDATE", Integer.class, productId);
+        if (quantity.isEmpty()) {
+            throw new NotFoundException("Product not found");
+        }
+        Integer pending = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(quantity), 0) FROM order_detail WHERE product_id = ? AND stock_pending = true",
+                Integer.class, productId);
+        int available = quantity.get(0) - (pending == null ? 0 : pending);
+        if (available < 0) {
+            System.err.println("Product " + productId + " is oversold by " + -available + " units");
+        }
+        return Math.max(0, available);
+    }
+
+    // closes the counter and waits until no reservation is in flight; the caller reopens or drops it
+    private void drain(long productId, StripedCounter counter) {
+        counter.close();
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+        while (counter.inFlight() > 0) {
+            if (System.currentTimeMillis() > deadline) {
+                counter.open();
+                throw new RuntimeException("Checkouts of product " + productId + " are still in progress, try again");
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                counter.open();
+                throw new RuntimeException("Interrupted while waiting for checkouts of product " + productId);
+            }
+        }
+    }
+
+    // units spread over padded slots; each thread starts at its own slot and moves on when it runs dry
+    static final class StripedCounter {
+        private static final int PADDING = 16; // one slot per 64-byte cache line
+
+        private final AtomicIntegerArray slots = new AtomicIntegerArray(STRIPES * PADDING);
+
+        // reservations taken but not yet confirmed or aborted; striped too, it moves on every checkout
+        private final LongAdder inFlight = new LongAdder();
+        private volatile boolean closed;
+
+        StripedCounter(int units) {
+            set(units);
+        }
+
+        // only while closed and drained, or before the counter is published
+        void set(int units) {
+            for (int i = 0; i < STRIPES; i++) {
+                slots.set(i * PADDING, units / STRIPES + (i < units % STRIPES ? 1 : 0));
+            }
+        }
+
+        // counted in flight before checking closed, so drain either sees it or it sees closed
+        boolean reserve(int units) {
+            inFlight.increment();
+            if (closed || !take(units)) {
+                inFlight.decrement();
+                return false;
+            }
+            return true;
+        }
+
+        void settle() {
+            inFlight.decrement();
+        }
+
+        long inFlight() {
+            return inFlight.sum();
+        }
+
+        void close() {
+            closed = true;
+        }
+
+        void open() {
+            closed = false;
+        }
+
+        // all or nothing: units taken from several slots are put back if the total falls short
+        boolean take(int units) {
+            int start = ThreadLocalRandom.current().nextInt(STRIPES);
+            int taken = 0;
+            for (int i = 0; i < STRIPES && taken < units; i++) {
+                int slot = ((start + i) & (STRIPES - 1)) * PADDING;
+                while (taken < units) {
+                    int available = slots.get(slot);
+                    if (available == 0) {
+                        break;
+                    }
+                    int grab = Math.min(available, units - taken);
+                    if (slots.compareAndSet(slot, available, available - grab)) {
+                        taken += grab;
+                    }
+                }
+            }
+            if (taken < units) {
+                put(taken);
+                return false;
+            }
+            return true;
+        }
+
+        void put(int units) {
+            if (units > 0) {
+                slots.getAndAdd(ThreadLocalRandom.current().nextInt(STRIPES) * PADDING, units);
+            }
+        }
+
+        int sum() {
+            int sum = 0;
+            for (int i = 0; i < STRIPES; i++) {
+                sum += slots.get(i * PADDING);
+            }
+            return sum;
+        }
+    }
+}
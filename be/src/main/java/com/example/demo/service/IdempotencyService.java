@@ -0,0 +1,234 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Account;
+import com.example.demo.entity.IdempotencyRecord;
+import com.example.demo.entity.Order;
+import com.example.demo.entity.request.OrderDetailRequest;
+import com.example.demo.entity.request.OrderRequest;
+import com.example.demo.entity.response.PaymentResponse;
+import com.example.demo.enums.IdempotencyStatus;
+import com.example.demo.enums.OrderStatus;
+import com.example.demo.exception.exceptions.IdempotencyException;
+import com.example.demo.repository.IdempotencyRecordRepository;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.utils.AccountUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Idempotency-Key support for checkout. The first request with a key claims it with an
+ * INSERT IGNORE on the unique (account, key) pair; a retry then gets the stored order
+ * and payment URL back instead of creating a second order. A retry that arrives while
+ * the first request is still running gets 409, and a key reused for a different cart
+ * gets 422. Finished results are also kept in a small LRU so that double clicks do not
+ * even reach the database. Keys expire after idempotency.retention-hours.
+ *
+ * The order id is written to the key in the same transaction that saves the order, so a
+ * key without an order id never has an order behind it. A claim still IN_PROGRESS after
+ * idempotency.lease-seconds belongs to a request that died: with an order id the retry
+ * finishes it from that order, without one the key is claimed again.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final int CACHE_SIZE = 10_000;
+    private static final int MAX_KEY_LENGTH = 100;
+
+    @Value("${idempotency.retention-hours:24}")
+    long retentionHours;
+
+    @Value("${idempotency.lease-seconds:60}")
+    long leaseSeconds;
+
+    @Autowired
+    IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Autowired
+    OrderRepository orderRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    AccountUtils accountUtils;
+
+    @Autowired
+    OrderService orderService;
+
+    // "accountId:key" -> completed record; access ordered, so the eldest entry is the least recently used
+    private final Map<String, IdempotencyRecord> completed = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, IdempotencyRecord> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+
+    public CompletableFuture<PaymentResponse> checkout(String key, OrderRequest orderRequest) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new RuntimeException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        Account account = accountUtils.getCurrentAccount();
+        String fingerprint = fingerprint(orderRequest);
+
+        IdempotencyRecord cached = completed.get(account.getId() + ":" + key);
+        if (cached != null) {
+            return replay(cached, fingerprint);
+        }
+
+        long accountId = account.getId();
+        long claimId = 0;
+        while (claimId == 0) {
+            claimId = claim(accountId, key, fingerprint, orderRequest.getPaymentMethod());
+            if (claimId == 0) {
+                IdempotencyRecord existing = idempotencyRecordRepository.findByAccountIdAndIdempotencyKey(accountId, key)
+                        .orElseThrow(() -> new IdempotencyException(HttpStatus.CONFLICT, "Idempotency-Key is being released, retry"));
+                if (!isAbandoned(existing) || existing.getOrderId() != null || !existing.getFingerprint().equals(fingerprint)) {
+                    return replay(existing, fingerprint);
+                }
+                // the request holding the key died before its order committed; only one retry gets to drop the claim
+                if (jdbcTemplate.update("DELETE FROM idempotency_key WHERE id = ? AND status = ? AND order_id IS NULL",
+                        existing.getId(), IdempotencyStatus.IN_PROGRESS.name()) == 0) {
+                    throw new IdempotencyException(HttpStatus.CONFLICT, "A request with this Idempotency-Key is still in progress");
+                }
+            }
+        }
+
+        long keyId = claimId;
+        Order order;
+        try {
+            // the order id lands on our claim in the order's own transaction; if the claim was taken from us, no order
+            order = orderService.placeOrder(orderRequest, saved -> {
+                if (jdbcTemplate.update("UPDATE idempotency_key SET order_id = ? WHERE id = ? AND order_id IS NULL",
+                        saved.getId(), keyId) == 0) {
+                    throw new IdempotencyException(HttpStatus.CONFLICT, "Idempotency-Key was claimed by another request");
+                }
+            });
+        } catch (RuntimeException e) {
+            // nothing was created, so the key may be used again
+            jdbcTemplate.update("DELETE FROM idempotency_key WHERE id = ? AND order_id IS NULL", keyId);
+            throw e;
+        }
+
+        return orderService.createPaymentUrlAsync(order, orderRequest.getPaymentMethod()).handle((paymentUrl, error) -> {
+            // once the order exists the key is done; a retry re-creates a missing payment URL for the same order
+            jdbcTemplate.update("UPDATE idempotency_key SET status = ?, payment_url = ? WHERE id = ?",
+                    IdempotencyStatus.COMPLETED.name(), paymentUrl, keyId);
+            if (error != null) {
+                throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+            }
+
+            IdempotencyRecord record = new IdempotencyRecord();
+            record.setId(keyId);
+            record.setAccountId(accountId);
+            record.setIdempotencyKey(key);
+            record.setFingerprint(fingerprint);
+            record.setStatus(IdempotencyStatus.COMPLETED);
+            record.setOrderId(order.getId());
+            record.setPaymentUrl(paymentUrl);
+            record.setPaymentMethod(orderRequest.getPaymentMethod());
+            record.setCreateAt(new Date());
+            completed.put(accountId + ":" + key, record);
+            return response(record);
+        });
+    }
+
+    // id of the new IN_PROGRESS row, or 0 when the key is already taken
+    private long claim(long accountId, String key, String fingerprint, String paymentMethod) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        int inserted = jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement("INSERT IGNORE INTO idempotency_key " +
+                            "(account_id, idempotency_key, fingerprint, status, payment_method, create_at) VALUES (?, ?, ?, ?, ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS);
+            statement.setLong(1, accountId);
+            statement.setString(2, key);
+            statement.setString(3, fingerprint);
+            statement.setString(4, IdempotencyStatus.IN_PROGRESS.name());
+            statement.setString(5, paymentMethod);
+            statement.setTimestamp(6, new Timestamp(System.currentTimeMillis()));
+            return statement;
+        }, keyHolder);
+        return inserted == 0 ? 0 : keyHolder.getKey().longValue();
+    }
+
+    // an IN_PROGRESS claim older than the lease has no request working on it any more
+    private boolean isAbandoned(IdempotencyRecord record) {
+        return record.getStatus() == IdempotencyStatus.IN_PROGRESS && record.getCreateAt() != null
+                && record.getCreateAt().getTime() < System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(leaseSeconds);
+    }
+
+    private CompletableFuture<PaymentResponse> replay(IdempotencyRecord record, String fingerprint) {
+        if (!record.getFingerprint().equals(fingerprint)) {
+            throw new IdempotencyException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    "Idempotency-Key was already used for a different order");
+        }
+        if (record.getStatus() != IdempotencyStatus.COMPLETED && !isAbandoned(record)) {
+            throw new IdempotencyException(HttpStatus.CONFLICT, "A request with this Idempotency-Key is still in progress");
+        }
+        if (record.getPaymentUrl() != null) {
+            completed.put(record.getAccountId() + ":" + record.getIdempotencyKey(), record);
+            return CompletableFuture.completedFuture(response(record));
+        }
+        Order order = orderRepository.findOrderById(record.getOrderId());
+        if (order == null || order.getStatus() != OrderStatus.IN_PROCESS) {
+            return CompletableFuture.completedFuture(response(record));
+        }
+        return orderService.createPaymentUrlAsync(order, record.getPaymentMethod()).thenApply(paymentUrl -> {
+            jdbcTemplate.update("UPDATE idempotency_key SET status = ?, payment_url = ? WHERE id = ?",
+                    IdempotencyStatus.COMPLETED.name(), paymentUrl, record.getId());
+            record.setStatus(IdempotencyStatus.COMPLETED);
+            record.setPaymentUrl(paymentUrl);
+            completed.put(record.getAccountId() + ":" + record.getIdempotencyKey(), record);
+            return response(record);
+        });
+    }
+
+    @Scheduled(fixedDelay = 1, timeUnit = TimeUnit.HOURS)
+    public void purgeExpired() {
+        Timestamp cutoff = new Timestamp(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(retentionHours));
+        jdbcTemplate.update("DELETE FROM idempotency_key WHERE create_at < ?", cutoff);
+        completed.values().removeIf(record -> record.getCreateAt() != null && record.getCreateAt().before(cutoff));
+    }
+
+    private static PaymentResponse response(IdempotencyRecord record) {
+        PaymentResponse response = new PaymentResponse();
+        response.setOrderId(String.valueOf(record.getOrderId()));
+        response.setPaymentUrl(record.getPaymentUrl());
+        return response;
+    }
+
+    // same products and quantities (in any line order) and same payment method -> same fingerprint
+    static String fingerprint(OrderRequest orderRequest) {
+        Map<Long, Integer> lines = new TreeMap<>();
+        if (orderRequest.getDetails() != null) {
+            for (OrderDetailRequest detail : orderRequest.getDetails()) {
+                lines.merge(detail.getProductId(), detail.getQuantity(), Integer::sum);
+            }
+        }
+        StringBuilder canonical = new StringBuilder(String.valueOf(orderRequest.getPaymentMethod()));
+        lines.forEach((productId, quantity) -> canonical.append('|').append(productId).append(':').append(quantity));
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(canonical.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.response.MediaResponse;
+import com.example.demo.enums.MediaVariant;
+import com.example.demo.exception.exceptions.NotFoundException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Product and review images stored on local disk under their SHA-256, so uploading the
+ * same picture twice stores it once and a URL can be cached forever.
+ *
+ * Layout: {storage-dir}/{variant}/{first two hex chars}/{sha-256}.{ext}. Resized variants
+ * are produced on a small background pool after upload; until one exists the original
+ * is served in its place with a revalidating cache header instead of an immutable one.
+ * Files are handed to Tomcat's sendfile when the connector supports it, so the bytes go
+ * from the page cache to the socket; otherwise they are copied with FileChannel.transferTo
+ * into the response stream, through a small buffer.
+ *
+ * Uploads are checked from their header before anything is decoded: the format is the one
+ * the image reader recognises, whatever content type the client declared, and images over
+ * media.max-pixels are refused so a small, highly compressed file cannot decode to gigabytes.
+ */
+@Service
+public class MediaService {
+
+    private static final Pattern MEDIA_ID = Pattern.compile("[0-9a-f]{64}\\.(jpg|png|gif)");
+    // ImageReader format name -> extension
+    private static final Map<String, String> FORMATS = Map.of(
+            "jpeg", "jpg",
+            "png", "png",
+            "gif", "gif");
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            "jpg", "image/jpeg",
+            "png", "image/png",
+            "gif", "image/gif");
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE = "no-cache";
+
+    @Value("${media.storage-dir:./media}")
+    String storageDir;
+
+    @Value("${media.variant-threads:2}")
+    int variantThreads;
+
+    // 25 megapixels decode to about 100 MB
+    @Value("${media.max-pixels:25000000}")
+    long maxPixels;
+
+    private Path root;
+    private ExecutorService variantExecutor;
+
+    // media ids whose variants are queued or being generated
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(storageDir).toAbsolutePath().normalize();
+        Files.createDirectories(root.resolve("tmp"));
+        AtomicInteger threads = new AtomicInteger();
+        // bounded queue: when it is full the request is dropped and retried the next time the variant is asked for
+        variantExecutor = new ThreadPoolExecutor(variantThreads, variantThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(1000), runnable -> {
+                    Thread thread = new Thread(runnable, "media-variants-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        variantExecutor.shutdownNow();
+    }
+
+    // POST store an uploaded image and schedule its variants
+    public MediaResponse store(MultipartFile file) throws IOException {
+        if (file.isEmpty()) {
+            throw new RuntimeException("Only JPEG, PNG and GIF images are supported");
+        }
+
+        Path upload = Files.createTempFile(root.resolve("tmp"), "upload", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+                Files.copy(in, upload, StandardCopyOption.REPLACE_EXISTING);
+            }
+            ImageHeader header = readHeader(upload);
+            if (header == null) {
+                throw new RuntimeException("Only JPEG, PNG and GIF images are supported");
+            }
+            if (header.pixels() > maxPixels) {
+                throw new RuntimeException("Image is too large: " + header.width() + "x" + header.height()
+                        + " pixels, at most " + maxPixels + " allowed");
+            }
+
+            String id = HexFormat.of().formatHex(digest.digest()) + "." + header.extension();
+            Path original = path(id, MediaVariant.ORIGINAL);
+            if (!Files.exists(original)) {
+                Files.createDirectories(original.getParent());
+                try {
+                    Files.move(upload, original, StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException e) {
+                    // the same image was uploaded concurrently
+                }
+            }
+            scheduleVariants(id);
+            return toResponse(id);
+        } finally {
+            Files.deleteIfExists(upload);
+        }
+    }
+
+    // GET write an image (or the requested byte range of it) to the response
+    public void serve(String id, MediaVariant variant, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!MEDIA_ID.matcher(id).matches() || !Files.exists(path(id, MediaVariant.ORIGINAL))) {
+            throw new NotFoundException("Media not found");
+        }
+        MediaVariant served = variant;
+        Path file = path(id, variant);
+        if (!Files.exists(file)) {
+            scheduleVariants(id);
+            served = MediaVariant.ORIGINAL;
+            file = path(id, served);
+        }
+        boolean complete = served == variant;
+
+        String etag = "\"" + id + "-" + served.name().toLowerCase(Locale.ROOT) + "\"";
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return;
+        }
+
+        long length = Files.size(file);
+        long start = 0;
+        long end = length - 1;
+        response.setContentType(CONTENT_TYPES.get(id.substring(id.lastIndexOf('.') + 1)));
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, complete ? IMMUTABLE : REVALIDATE);
+
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
+            }
+            // several ranges are answered with the whole file, which RFC 9110 allows
+            if (ranges.size() == 1) {
+                HttpRange requested = ranges.get(0);
+                try {
+                    start = requested.getRangeStart(length);
+                    end = requested.getRangeEnd(length);
+                } catch (IllegalArgumentException e) {
+                    start = length;
+                }
+                if (start >= length || start > end) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+        response.setContentLengthLong(end - start + 1);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute("org.apache.tomcat.sendfile.support"))) {
+            // Tomcat writes the file straight from the page cache after the handler returns
+            request.setAttribute("org.apache.tomcat.sendfile.filename", file.toString());
+            request.setAttribute("org.apache.tomcat.sendfile.start", start);
+            request.setAttribute("org.apache.tomcat.sendfile.end", end + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            OutputStream out = response.getOutputStream();
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = start;
+            long remaining = end - start + 1;
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, target);
+                if (written <= 0) {
+                    break;
+                }
+                position += written;
+                remaining -= written;
+            }
+            out.flush();
+        }
+    }
+
+    private void scheduleVariants(String id) {
+        if (!pending.add(id)) {
+            return;
+        }
+        try {
+            variantExecutor.execute(() -> {
+                try {
+                    generateVariants(id);
+                } finally {
+                    pending.remove(id);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(id);
+        }
+    }
+
+    private void generateVariants(String id) {
+        try {
+            BufferedImage source = null;
+            for (MediaVariant variant : MediaVariant.values()) {
+                Path target = path(id, variant);
+                if (variant == MediaVariant.ORIGINAL || Files.exists(target)) {
+                    continue;
+                }
+                if (source == null) {
+                    // files stored before the pixel limit existed are checked here too
+                    ImageHeader header = readHeader(path(id, MediaVariant.ORIGINAL));
+                    if (header == null || header.pixels() > maxPixels) {
+                        return;
+                    }
+                    source = ImageIO.read(path(id, MediaVariant.ORIGINAL).toFile());
+                    if (source == null) {
+                        return;
+                    }
+                }
+                String extension = id.substring(id.lastIndexOf('.') + 1);
+                Path temp = Files.createTempFile(root.resolve("tmp"), "variant", "." + extension);
+                try {
+                    ImageIO.write(resize(source, variant.getMaxSize(), !extension.equals("jpg")), extension, temp.toFile());
+                    Files.createDirectories(target.getParent());
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not generate variants for " + id + ": " + e.getMessage());
+        }
+    }
+
+    // halves the image until it is close to the target, then does one bilinear pass: close to bicubic quality at a fraction of the cost
+    static BufferedImage resize(BufferedImage source, int maxSize, boolean alpha) {
+        int longest = Math.max(source.getWidth(), source.getHeight());
+        double scale = Math.min(1.0, (double) maxSize / longest);
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D graphics = next.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            if (!alpha) {
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, currentWidth, currentHeight);
+            }
+            graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            graphics.dispose();
+            current = next;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    // format and size from the image header, without decoding pixels; null unless it is a readable JPEG, PNG or GIF
+    static ImageHeader readHeader(Path file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            if (in == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                String extension = FORMATS.get(reader.getFormatName().toLowerCase(Locale.ROOT));
+                if (extension == null) {
+                    return null;
+                }
+                reader.setInput(in, true, true);
+                return new ImageHeader(extension, reader.getWidth(0), reader.getHeight(0));
+            } catch (IOException | RuntimeException e) {
+                return null; // truncated or corrupt header
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    record ImageHeader(String extension, int width, int height) {
+        long pixels() {
+            return (long) width * height;
+        }
+    }
+
+    private Path path(String id, MediaVariant variant) {
+        return root.resolve(variant.name().toLowerCase(Locale.ROOT)).resolve(id.substring(0, 2)).resolve(id);
+    }
+
+    private static MediaResponse toResponse(String id) {
+        String url = "/api/media/" + id;
+        return new MediaResponse(id, url, url + "?variant=thumb", url + "?variant=medium");
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,25 +1,32 @@
 package com.example.demo.service;
 
 import com.example.demo.entity.Order;
+import com.example.demo.entity.request.MomoNotificationRequest;
+import com.example.demo.utils.BoundedBodyHandler;
+import com.example.demo.utils.HmacSigner;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.net.URI;
-import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.*;
 
 @Service
-public class MomoPaymentService {
+public class MomoPaymentService implements PaymentGateway {
+
+    public static final String METHOD = "MOMO";
+
+    private static final String REQUEST_TYPE = "payWithMethod";
 
     @Value("${momo.partner-code}")
     private String partnerCode;
@@ -39,95 +46,104 @@ public class MomoPaymentService {
     @Value("${momo.ipn-url}")
     private String ipnUrl;
 
+    // the whole call, connect included, must fit in the checkout deadline
+    @Value("${payment.gateway-timeout-ms:8000}")
+    private long gatewayTimeoutMillis;
+
+    @Value("${momo.max-response-bytes:65536}")
+    private int maxResponseBytes;
+
+    @Value("${momo.max-in-flight:64}")
+    private int maxInFlight;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // one client for the whole service: it keeps connections to MoMo alive and reuses them
     private final HttpClient httpClient;
 
+    private URI apiUri;
+    private Semaphore inFlight;
+
+    private HmacSigner signer;
+
+    // constant parts of the signed string, fields in the alphabetical order MoMo signs them
+    private String signaturePrefix;
+    private String signatureMiddle;
+    private String signatureSuffix;
+
     public MomoPaymentService() {
         this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(10))
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(3))
                 .build();
     }
 
-    public String createPaymentRequest(Order order, String orderInfo) throws Exception {
-        System.out.println("Starting MoMo payment request for order #" + order.getId());
-        System.out.println("MoMo Config - Partner Code: " + partnerCode);
-        System.out.println("MoMo Config - Access Key: " + accessKey);
-        System.out.println("MoMo Config - Redirect URL: " + redirectUrl);
-        System.out.println("MoMo Config - IPN URL: " + ipnUrl);
-        
+    @PostConstruct
+    void init() {
+        signer = new HmacSigner("HmacSHA256", secretKey);
+        apiUri = URI.create(apiEndpoint);
+        inFlight = new Semaphore(maxInFlight);
+        signaturePrefix = "accessKey=" + accessKey + "&amount=";
+        signatureMiddle = "&extraData=&ipnUrl=" + ipnUrl + "&orderId=";
+        signatureSuffix = "&partnerCode=" + partnerCode + "&redirectUrl=" + redirectUrl + "&requestId=";
+    }
+
+    @Override
+    public String method() {
+        return METHOD;
+    }
+
+    @Override
+    public String createPaymentUrl(Order order) throws Exception {
+        try {
+            return createPaymentUrlAsync(order, Runnable::run).get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    // no executor thread is held while MoMo answers: the HTTP client completes the future
+    @Override
+    public CompletableFuture<String> createPaymentUrlAsync(Order order, Executor executor) {
+        return createPaymentRequest(order, "Payment for order #" + order.getId());
+    }
+
+    // one MoMo create call: streams the signed request out, reads at most momo.max-response-bytes back
+    public CompletableFuture<String> createPaymentRequest(Order order, String orderInfo) {
+        if (!inFlight.tryAcquire()) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Too many MoMo requests in flight"));
+        }
+
         // Create unique order ID and request ID for MoMo
         String orderId = "ORDER_" + order.getId() + "_" + System.currentTimeMillis();
         String requestId = orderId;
         long amount = Math.round(order.getTotal());
-        String extraData = "";  // Base64 encoded data if needed
-        String requestType = "payWithMethod";
-        boolean autoCapture = true;
-        String lang = "vi";
-
-        System.out.println("MoMo payment parameters - Order ID: " + orderId);
-        System.out.println("MoMo payment parameters - Request ID: " + requestId);
-        System.out.println("MoMo payment parameters - Amount: " + amount);
-        System.out.println("MoMo payment parameters - Order Info: " + orderInfo);
 
         // Build raw signature string
-        String rawSignature = "accessKey=" + accessKey
-                + "&amount=" + amount
-                + "&extraData=" + extraData
-                + "&ipnUrl=" + ipnUrl
-                + "&orderId=" + orderId
+        String rawSignature = signaturePrefix + amount
+                + signatureMiddle + orderId
                 + "&orderInfo=" + orderInfo
-                + "&partnerCode=" + partnerCode
-                + "&redirectUrl=" + redirectUrl
-                + "&requestId=" + requestId
-                + "&requestType=" + requestType;
+                + signatureSuffix + requestId
+                + "&requestType=" + REQUEST_TYPE;
 
         // Create HMAC SHA256 signature
-        String signature = createSignature(rawSignature, secretKey);
-
-        // Create request body
-        Map<String, Object> requestData = new HashMap<>();
-        requestData.put("partnerCode", partnerCode);
-        requestData.put("partnerName", "SkinCare Shop");
-        requestData.put("storeId", "SkinCareShopOnline");
-        requestData.put("requestId", requestId);
-        requestData.put("amount", amount);
-        requestData.put("orderId", orderId);
-        requestData.put("orderInfo", orderInfo);
-        requestData.put("redirectUrl", redirectUrl);
-        requestData.put("ipnUrl", ipnUrl);
-        requestData.put("lang", lang);
-        requestData.put("requestType", requestType);
-        requestData.put("autoCapture", autoCapture);
-        requestData.put("extraData", extraData);
-        requestData.put("signature", signature);
-
-        // Convert to JSON
-        String requestBody = convertToJson(requestData);
-        System.out.println("MoMo API request body: " + requestBody);
-
-        // Create HTTP request
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(apiEndpoint))
-                .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(requestBody))
-                .build();
+        String signature = signer.sign(rawSignature);
 
-        // Send request and get response
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-        System.out.println("MoMo API response status: " + response.statusCode());
-        System.out.println("MoMo API response body: " + response.body());
-
-        // Parse response
-        Map<String, Object> responseData = parseJsonResponse(response.body());
-
-        // Check if request was successful
-        if (responseData.containsKey("payUrl")) {
-            System.out.println("MoMo payment URL generated successfully: " + responseData.get("payUrl"));
-            return (String) responseData.get("payUrl");
-        } else {
-            String errorMessage = "Failed to create MoMo payment: " + (responseData.containsKey("message") ? responseData.get("message") : "Unknown error");
-            System.err.println(errorMessage);
-            throw new RuntimeException(errorMessage);
+        CompletableFuture<String> payUrl;
+        try {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(apiUri)
+                    .header("Content-Type", "application/json")
+                    .timeout(Duration.ofMillis(gatewayTimeoutMillis))
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(requestBody(requestId, amount, orderId, orderInfo, signature)))
+                    .build();
+            payUrl = httpClient.sendAsync(request, new BoundedBodyHandler(maxResponseBytes))
+                    .thenApply(response -> payUrl(response.body()));
+        } catch (RuntimeException | IOException e) {
+            payUrl = CompletableFuture.failedFuture(e);
         }
+        return payUrl.whenComplete((url, error) -> inFlight.release());
     }
 
     public boolean verifyPaymentResponse(String orderId, String requestId, String amount, String resultCode, String transId, String signature) {
@@ -145,79 +161,106 @@ public class MomoPaymentService {
                     + "&transId=" + transId;
 
             // Verify signature
-            String expectedSignature = createSignature(rawSignature, secretKey);
-            return expectedSignature.equals(signature);
+            return signer.verify(rawSignature, signature);
         } catch (Exception e) {
             return false;
         }
     }
 
-    private String createSignature(String data, String secretKey) throws NoSuchAlgorithmException, InvalidKeyException {
-        Mac hmacSha256 = Mac.getInstance("HmacSHA256");
-        SecretKeySpec keySpec = new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
-        hmacSha256.init(keySpec);
-        byte[] hmacBytes = hmacSha256.doFinal(data.getBytes(StandardCharsets.UTF_8));
-
-        StringBuilder result = new StringBuilder();
-        for (byte b : hmacBytes) {
-            result.append(String.format("%02x", b));
+    // IPN signature: every field of the notification but the signature, in alphabetical order
+    public boolean verifyNotification(MomoNotificationRequest notification) {
+        if (notification.getSignature() == null || !partnerCode.equals(notification.getPartnerCode())) {
+            return false;
         }
-        return result.toString();
+        String rawSignature = "accessKey=" + accessKey
+                + "&amount=" + text(notification.getAmount())
+                + "&extraData=" + text(notification.getExtraData())
+                + "&message=" + text(notification.getMessage())
+                + "&orderId=" + text(notification.getOrderId())
+                + "&orderInfo=" + text(notification.getOrderInfo())
+                + "&orderType=" + text(notification.getOrderType())
+                + "&partnerCode=" + notification.getPartnerCode()
+                + "&payType=" + text(notification.getPayType())
+                + "&requestId=" + text(notification.getRequestId())
+                + "&responseTime=" + text(notification.getResponseTime())
+                + "&resultCode=" + text(notification.getResultCode())
+                + "&transId=" + text(notification.getTransId());
+        return signer.verify(rawSignature, notification.getSignature());
     }
 
-    private String convertToJson(Map<String, Object> data) {
-        // Simple JSON conversion for demo - in real app use Jackson or Gson
-        StringBuilder json = new StringBuilder("{");
-        boolean first = true;
-        for (Map.Entry<String, Object> entry : data.entrySet()) {
-            if (!first) {
-                json.append(",");
-            }
-            json.append("\"").append(entry.getKey()).append("\":");
-            
-            if (entry.getValue() instanceof String) {
-                json.append("\"").append(entry.getValue()).append("\"");
-            } else if (entry.getValue() instanceof Number || entry.getValue() instanceof Boolean) {
-                json.append(entry.getValue());
-            } else {
-                json.append("\"").append(entry.getValue()).append("\"");
-            }
-            
-            first = false;
+    // our order id inside a MoMo order id (ORDER_<id>_<timestamp>), or -1 when it is not one of ours
+    public static long orderIdOf(String momoOrderId) {
+        if (momoOrderId == null || !momoOrderId.startsWith("ORDER_")) {
+            return -1;
+        }
+        int end = momoOrderId.indexOf('_', 6);
+        try {
+            return Long.parseLong(end < 0 ? momoOrderId.substring(6) : momoOrderId.substring(6, end));
+        } catch (NumberFormatException e) {
+            return -1;
         }
-        json.append("}");
-        return json.toString();
     }
 
-    private Map<String, Object> parseJsonResponse(String jsonString) {
-        // Simple JSON parsing for demo - in real app use Jackson or Gson
-        Map<String, Object> result = new HashMap<>();
-        
-        try {
-            System.out.println("Parsing JSON response: " + jsonString);
-            
-            // For demo, extract common fields from JSON
-            extractJsonField(jsonString, result, "payUrl");
-            extractJsonField(jsonString, result, "message");
-            extractJsonField(jsonString, result, "resultCode");
-            extractJsonField(jsonString, result, "orderId");
-            
-            System.out.println("Parsed result: " + result);
-            return result;
-        } catch (Exception e) {
-            System.err.println("Error parsing JSON response: " + e.getMessage());
-            return result;
+    private static String text(Object value) {
+        return value == null ? "" : value.toString();
+    }
+
+    private byte[] requestBody(String requestId, long amount, String orderId, String orderInfo, String signature) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(512);
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(body)) {
+            json.writeStartObject();
+            json.writeStringField("partnerCode", partnerCode);
+            json.writeStringField("partnerName", "SkinCare Shop");
+            json.writeStringField("storeId", "SkinCareShopOnline");
+            json.writeStringField("requestId", requestId);
+            json.writeNumberField("amount", amount);
+            json.writeStringField("orderId", orderId);
+            json.writeStringField("orderInfo", orderInfo);
+            json.writeStringField("redirectUrl", redirectUrl);
+            json.writeStringField("ipnUrl", ipnUrl);
+            json.writeStringField("lang", "vi");
+            json.writeStringField("requestType", REQUEST_TYPE);
+            json.writeBooleanField("autoCapture", true);
+            json.writeStringField("extraData", ""); // Base64 encoded data if needed, it is signed as empty
+            json.writeStringField("signature", signature);
+            json.writeEndObject();
         }
+        return body.toByteArray();
     }
-    
-    private void extractJsonField(String json, Map<String, Object> result, String fieldName) {
-        String fieldPattern = "\"" + fieldName + "\"\\s*:\\s*\"([^\"]*)\"";
-        java.util.regex.Pattern pattern = java.util.regex.Pattern.compile(fieldPattern);
-        java.util.regex.Matcher matcher = pattern.matcher(json);
-        
-        if (matcher.find()) {
-            result.put(fieldName, matcher.group(1));
-            System.out.println("Extracted " + fieldName + ": " + matcher.group(1));
+
+    // payUrl of a create response; anything else is reported with MoMo's message
+    private String payUrl(byte[] body) {
+        String payUrl = null;
+        String message = null;
+        String resultCode = null;
+        try (JsonParser json = objectMapper.getFactory().createParser(body)) {
+            if (json.nextToken() != JsonToken.START_OBJECT) {
+                throw new RuntimeException("Failed to create MoMo payment: response is not a JSON object");
+            }
+            while (json.nextToken() == JsonToken.FIELD_NAME) {
+                String field = json.currentName();
+                JsonToken value = json.nextToken();
+                switch (field) {
+                    case "payUrl" -> payUrl = json.getValueAsString();
+                    case "message" -> message = json.getValueAsString();
+                    case "resultCode" -> resultCode = json.getValueAsString();
+                    default -> {
+                        if (value.isStructStart()) {
+                            json.skipChildren();
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create MoMo payment: unreadable response", e);
+        }
+
+        if (payUrl != null && !payUrl.isEmpty()) {
+            return payUrl;
         }
+        String errorMessage = "Failed to create MoMo payment: " + (message != null ? message : "Unknown error")
+                + (resultCode != null ? " (resultCode " + resultCode + ")" : "");
+        System.err.println(errorMessage);
+        throw new RuntimeException(errorMessage);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,114 @@
+package com.example.demo.service;
+
+import com.example.demo.enums.OrderStatus;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.utils.TimingWheel;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cancels orders that are still unpaid when their TTL runs out, so the stock they hold
+ * goes back on sale. Every unpaid order gets one timer in a {@link TimingWheel}: loaded
+ * from the database once at startup, added when an order is created, and never
+ * removed. An order paid in the meantime is left alone because the cancellation only
+ * applies to orders that are still IN_PROCESS.
+ */
+@Service
+public class OrderExpiryService {
+
+    private static final long TICK_MILLIS = 1000;
+
+    @Value("${order.unpaid-ttl-minutes:30}")
+    long unpaidTtlMinutes;
+
+    @Autowired
+    OrderRepository orderRepository;
+
+    @Autowired
+    OrderService orderService;
+
+    // guarded by "this"
+    private final TimingWheel<Long> wheel = new TimingWheel<>(TICK_MILLIS, System.currentTimeMillis());
+
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "order-expiry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        List<Long> overdue = new ArrayList<>();
+        synchronized (this) {
+            for (Object[] row : orderRepository.findIdAndCreateAtByStatus(OrderStatus.IN_PROCESS)) {
+                long orderId = ((Number) row[0]).longValue();
+                if (!wheel.schedule(orderId, deadline((Date) row[1]))) {
+                    overdue.add(orderId);
+                }
+            }
+        }
+        System.out.println("Order expiry loaded " + wheel.size() + " unpaid orders, " + overdue.size() + " already overdue");
+        expire(overdue);
+        ticker.scheduleAtFixedRate(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        ticker.shutdownNow();
+    }
+
+    // called after an order is created
+    public void schedule(long orderId, Date createAt) {
+        boolean scheduled;
+        synchronized (this) {
+            scheduled = wheel.schedule(orderId, deadline(createAt));
+        }
+        if (!scheduled) {
+            expire(List.of(orderId));
+        }
+    }
+
+    private void tick() {
+        List<Long> expired;
+        synchronized (this) {
+            expired = wheel.advance(System.currentTimeMillis());
+        }
+        expire(expired);
+    }
+
+    private void expire(List<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        try {
+            List<Long> cancelled = orderService.cancelUnpaid(orderIds);
+            if (!cancelled.isEmpty()) {
+                System.out.println("Cancelled " + cancelled.size() + " unpaid orders: " + cancelled);
+            }
+        } catch (RuntimeException e) {
+            // a failure must not kill the ticker; retry these orders on the next tick
+            System.err.println("Could not cancel expired orders " + orderIds + ": " + e.getMessage());
+            synchronized (this) {
+                for (Long orderId : orderIds) {
+                    wheel.schedule(orderId, System.currentTimeMillis() + TICK_MILLIS);
+                }
+            }
+        }
+    }
+
+    private long deadline(Date createAt) {
+        long created = createAt == null ? System.currentTimeMillis() : createAt.getTime();
+        return created + TimeUnit.MINUTES.toMillis(unpaidTtlMinutes);
+    }
+}
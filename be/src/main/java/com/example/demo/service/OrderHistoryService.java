@@ -0,0 +1,98 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.response.OrderHistoryPageResponse;
+import com.example.demo.entity.response.OrderHistoryResponse;
+import com.example.demo.enums.OrderStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read model behind "my orders".
+ *
+ * A page is read with one query: the page of orders is picked in a derived table and joined
+ * to its lines and their products, so nothing is lazily loaded while serializing. Pages are
+ * cached per account until one of the account's orders is created or changes status.
+ */
+@Service
+public class OrderHistoryService {
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private static final int CACHED_ACCOUNTS = 10_000;
+
+    private static final String PAGE = "SELECT o.id, o.create_at, o.total, o.status, " +
+            "d.id, d.product_id, p.name, p.image, d.price, d.quantity " +
+            "FROM (SELECT id, create_at, total, status FROM orders " +
+            "      WHERE account_id = ? AND id < ? ORDER BY id DESC LIMIT ?) o " +
+            "LEFT JOIN order_detail d ON d.order_id = o.id " +
+            "LEFT JOIN product p ON p.id = d.product_id " +
+            "ORDER BY o.id DESC, d.id";
+
+    private static final OrderStatus[] STATUSES = OrderStatus.values();
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    // accountId -> ("cursor:size" -> page); access ordered, so the eldest account is the least recently used
+    private final Map<Long, Map<String, OrderHistoryPageResponse>> pages = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Map<String, OrderHistoryPageResponse>> eldest) {
+                    return size() > CACHED_ACCOUNTS;
+                }
+            });
+
+    // GET one page of the account's orders, newest first
+    public OrderHistoryPageResponse page(long accountId, Long cursor, int size) {
+        // a page loaded while the account is invalidated lands in the detached map and is never served
+        Map<String, OrderHistoryPageResponse> accountPages = pages.computeIfAbsent(accountId, id -> new ConcurrentHashMap<>());
+        return accountPages.computeIfAbsent(cursor + ":" + size, key -> load(accountId, cursor, size));
+    }
+
+    public void invalidate(long accountId) {
+        pages.remove(accountId);
+    }
+
+    public void invalidate(Collection<Long> accountIds) {
+        for (Long accountId : accountIds) {
+            pages.remove(accountId);
+        }
+    }
+
+    private OrderHistoryPageResponse load(long accountId, Long cursor, int size) {
+        // one extra order tells whether there is a next page
+        Map<Long, OrderHistoryResponse> orders = new LinkedHashMap<>();
+        jdbcTemplate.query(PAGE, resultSet -> {
+            long orderId = resultSet.getLong(1);
+            OrderHistoryResponse order = orders.get(orderId);
+            if (order == null) {
+                Timestamp createAt = resultSet.getTimestamp(2);
+                order = new OrderHistoryResponse();
+                order.setId(orderId);
+                order.setCreateAt(createAt == null ? null : new Date(createAt.getTime()));
+                order.setTotal(resultSet.getFloat(3));
+                order.setStatus(STATUSES[resultSet.getInt(4)]);
+                orders.put(orderId, order);
+            }
+            long lineId = resultSet.getLong(5);
+            if (!resultSet.wasNull()) {
+                order.getOrderDetails().add(new OrderHistoryResponse.Line(lineId, resultSet.getLong(6),
+                        resultSet.getString(7), resultSet.getString(8), resultSet.getFloat(9), resultSet.getInt(10)));
+            }
+        }, accountId, cursor == null ? Long.MAX_VALUE : cursor, size + 1);
+
+        List<OrderHistoryResponse> items = new ArrayList<>(orders.values());
+        Long nextCursor = null;
+        if (items.size() > size) {
+            items.remove(size);
+            nextCursor = items.get(size - 1).getId();
+        }
+        return new OrderHistoryPageResponse(items, nextCursor);
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.response.OrderPageResponse;
+import com.example.demo.entity.response.OrderSummaryResponse;
+import com.example.demo.enums.OrderStatus;
+import com.example.demo.model.OrderFilter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Admin order listing and export.
+ *
+ * Pages are keyset-paginated by id, newest first: the cursor is the id of the last order
+ * already returned, so every page is an index range scan no matter how deep it is. Only the
+ * order row, its account and its line count are read, never the lines themselves.
+ * The export runs the same query without a limit and streams rows as they arrive.
+ */
+@Service
+public class OrderListingService {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+
+    static final String[] COLUMNS = {"id", "createAt", "total", "status", "accountId", "accountName", "accountEmail", "itemCount"};
+
+    private static final String SELECT = "SELECT o.id, o.create_at, o.total, o.status, o.account_id, a.full_name, a.email, " +
+            "(SELECT COUNT(*) FROM order_detail d WHERE d.order_id = o.id) AS item_count " +
+            "FROM orders o LEFT JOIN account a ON a.id = o.account_id";
+
+    private static final OrderStatus[] STATUSES = OrderStatus.values();
+
+    @Autowired
+    NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    // GET one page of orders matching the filter, newest first
+    public OrderPageResponse page(OrderFilter filter, Long cursor, int size) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        StringBuilder sql = new StringBuilder(SELECT).append(where(filter, params));
+        if (cursor != null) {
+            sql.append(" AND o.id < :cursor");
+            params.addValue("cursor", cursor);
+        }
+        // one extra row tells whether there is a next page
+        sql.append(" ORDER BY o.id DESC LIMIT :limit");
+        params.addValue("limit", size + 1);
+
+        List<OrderSummaryResponse> items = new ArrayList<>(namedParameterJdbcTemplate.query(sql.toString(), params,
+                (resultSet, rowNum) -> new OrderSummaryResponse(
+                        resultSet.getLong(1),
+                        toDate(resultSet.getTimestamp(2)),
+                        resultSet.getFloat(3),
+                        STATUSES[resultSet.getInt(4)],
+                        resultSet.getObject(5, Long.class),
+                        resultSet.getString(6),
+                        resultSet.getString(7),
+                        resultSet.getInt(8))));
+        Long nextCursor = null;
+        if (items.size() > size) {
+            items.remove(size);
+            nextCursor = items.get(size - 1).getId();
+        }
+        return new OrderPageResponse(items, nextCursor);
+    }
+
+    // GET stream every order matching the filter, newest first
+    public void export(OrderFilter filter, OutputStream out, String contentType) throws IOException {
+        // a dedicated template: MIN_VALUE makes Connector/J stream rows instead of buffering the result
+        JdbcTemplate streamingTemplate = new JdbcTemplate(dataSource);
+        streamingTemplate.setFetchSize(Integer.MIN_VALUE);
+        NamedParameterJdbcTemplate streaming = new NamedParameterJdbcTemplate(streamingTemplate);
+
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sql = SELECT + where(filter, params) + " ORDER BY o.id DESC";
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        boolean ndjson = ProductImportService.NDJSON.equals(contentType);
+        JsonGenerator json = ndjson ? objectMapper.getFactory().createGenerator(writer) : null;
+        if (!ndjson) {
+            writer.write(String.join(",", COLUMNS));
+            writer.write("\r\n");
+        }
+        try {
+            streaming.query(sql, params, resultSet -> {
+                try {
+                    Timestamp createAt = resultSet.getTimestamp(2);
+                    String status = STATUSES[resultSet.getInt(4)].name();
+                    Long accountId = resultSet.getObject(5, Long.class);
+                    if (ndjson) {
+                        json.writeStartObject();
+                        json.writeNumberField("id", resultSet.getLong(1));
+                        json.writeStringField("createAt", createAt == null ? null : createAt.toInstant().toString());
+                        json.writeNumberField("total", resultSet.getFloat(3));
+                        json.writeStringField("status", status);
+                        if (accountId == null) {
+                            json.writeNullField("accountId");
+                        } else {
+                            json.writeNumberField("accountId", accountId);
+                        }
+                        json.writeStringField("accountName", resultSet.getString(6));
+                        json.writeStringField("accountEmail", resultSet.getString(7));
+                        json.writeNumberField("itemCount", resultSet.getInt(8));
+                        json.writeEndObject();
+                        json.writeRaw('\n');
+                    } else {
+                        String[] values = {
+                                resultSet.getString(1),
+                                createAt == null ? null : createAt.toInstant().toString(),
+                                resultSet.getString(3),
+                                status,
+                                accountId == null ? null : accountId.toString(),
+                                resultSet.getString(6),
+                                resultSet.getString(7),
+                                resultSet.getString(8)};
+                        for (int i = 0; i < values.length; i++) {
+                            if (i > 0) {
+                                writer.write(',');
+                            }
+                            writer.write(ProductImportService.escape(values[i]));
+                        }
+                        writer.write("\r\n");
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (json != null) {
+            json.flush();
+        }
+        writer.flush();
+    }
+
+    // every condition is sargable so the composite indexes on orders can serve it
+    private static String where(OrderFilter filter, MapSqlParameterSource params) {
+        StringBuilder where = new StringBuilder(" WHERE 1 = 1");
+        if (filter.getStatus() != null) {
+            where.append(" AND o.status = :status");
+            params.addValue("status", filter.getStatus().ordinal());
+        }
+        if (filter.getFrom() != null) {
+            where.append(" AND o.create_at >= :from");
+            params.addValue("from", Timestamp.valueOf(filter.getFrom().atStartOfDay()));
+        }
+        if (filter.getTo() != null) {
+            where.append(" AND o.create_at < :to");
+            params.addValue("to", Timestamp.valueOf(filter.getTo().plusDays(1).atStartOfDay()));
+        }
+        if (filter.getAccountId() != null) {
+            where.append(" AND o.account_id = :accountId");
+            params.addValue("accountId", filter.getAccountId());
+        }
+        if (filter.getMinTotal() != null) {
+            where.append(" AND o.total >= :minTotal");
+            params.addValue("minTotal", filter.getMinTotal());
+        }
+        if (filter.getMaxTotal() != null) {
+            where.append(" AND o.total <= :maxTotal");
+            params.addValue("maxTotal", filter.getMaxTotal());
+        }
+        return where.toString();
+    }
+
+    private static Date toDate(Timestamp timestamp) {
+        return timestamp == null ? null : new Date(timestamp.getTime());
+    }
+}
@@ -6,27 +6,39 @@ import com.example.demo.entity.OrderDetail;
 import com.example.demo.entity.Product;
 import com.example.demo.entity.request.OrderDetailRequest;
 import com.example.demo.entity.request.OrderRequest;
+import com.example.demo.entity.request.OrderStatusRequest;
+import com.example.demo.entity.response.OrderHistoryPageResponse;
+import com.example.demo.entity.response.OrderStatusResponse;
+import com.example.demo.entity.response.PaymentResponse;
 import com.example.demo.enums.OrderStatus;
+import com.example.demo.enums.PaymentAttemptKind;
+import com.example.demo.exception.exceptions.NotFoundException;
+import com.example.demo.exception.exceptions.OrderStatusException;
 import com.example.demo.repository.OrderRepository;
 import com.example.demo.repository.ProductRepository;
 import com.example.demo.utils.AccountUtils;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 @Service
 public class OrderService {
 
+    public static final int MAX_BULK_ORDERS = 1000;
+
+    private static final int MAX_RESERVE_ATTEMPTS = 3;
+
     @Autowired
     OrderRepository orderRepository;
 
@@ -39,178 +51,405 @@ public class OrderService {
     @Autowired
     AccountUtils accountUtils;
 
+    private final Map<String, PaymentGateway> paymentGateways = new HashMap<>();
+
     @Autowired
-    MomoPaymentService momoPaymentService;
+    ProductCatalogIndex productCatalogIndex;
 
-    public String create(OrderRequest orderRequest) throws Exception {
-        float total = 0;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    HotStockService hotStockService;
 
+    @Autowired
+    NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    OrderExpiryService orderExpiryService;
+
+    @Autowired
+    ThreadPoolTaskExecutor paymentExecutor;
+
+    @Autowired
+    OrderHistoryService orderHistoryService;
+
+    @Autowired
+    CartService cartService;
+
+    @Autowired
+    PaymentAttemptService paymentAttemptService;
+
+    @Value("${payment.gateway-timeout-ms:8000}")
+    long gatewayTimeoutMillis;
+
+    @Autowired
+    void setPaymentGateways(List<PaymentGateway> gateways) {
+        for (PaymentGateway gateway : gateways) {
+            paymentGateways.put(gateway.method(), gateway);
+        }
+    }
+
+    // the order is saved on the request thread, the gateway call completes the future later
+    public CompletableFuture<PaymentResponse> create(OrderRequest orderRequest) {
+        Order newOrder = placeOrder(orderRequest);
+        return createPaymentUrlAsync(newOrder, orderRequest.getPaymentMethod()).thenApply(paymentUrl -> {
+            PaymentResponse response = new PaymentResponse();
+            response.setOrderId(String.valueOf(newOrder.getId()));
+            response.setPaymentUrl(paymentUrl);
+            return response;
+        });
+    }
+
+    // asks the gateway for a payment URL off the request thread, giving up after payment.gateway-timeout-ms
+    public CompletableFuture<String> createPaymentUrlAsync(Order order, String paymentMethod) {
+        PaymentGateway gateway = gateway(paymentMethod);
+        long start = System.nanoTime();
+        return gateway.createPaymentUrlAsync(order, paymentExecutor)
+                .orTimeout(gatewayTimeoutMillis, TimeUnit.MILLISECONDS)
+                .whenComplete((paymentUrl, error) -> {
+                    paymentAttemptService.record(gateway.method(), PaymentAttemptKind.REQUEST, order.getId(),
+                            (long) Math.round(order.getTotal()), null, null, error == null, start,
+                            error == null ? null : error.toString());
+                    if (error != null) {
+                        // the order stays IN_PROCESS until it is paid or expires
+                        System.err.println("Error creating " + gateway.method() + " payment for order #" + order.getId() + ": " + error);
+                    }
+                });
+    }
+
+    // validates the lines, reserves the stock and saves the order
+    public Order placeOrder(OrderRequest orderRequest) {
+        return placeOrder(orderRequest, saved -> { });
+    }
+
+    // as above; onSaved runs inside the transaction that saves the order, and throwing from it rolls the order back
+    public Order placeOrder(OrderRequest orderRequest, Consumer<Order> onSaved) {
+        // merge repeated products and lock rows in id order, so concurrent checkouts cannot deadlock
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (OrderDetailRequest orderDetailRequest : orderRequest.getDetails()) {
+            if (orderDetailRequest.getQuantity() <= 0) {
+                throw new RuntimeException("Quantity must be positive");
+            }
+            quantities.merge(orderDetailRequest.getProductId(), orderDetailRequest.getQuantity(), Integer::sum);
+        }
+        if (quantities.isEmpty()) {
+            throw new RuntimeException("Order has no products");
+        }
+
+        // one IN query for every product of the order
+        Map<Long, Product> products = new HashMap<>();
+        for (Product product : productRepository.findAllById(quantities.keySet())) {
+            products.put(product.getId(), product);
+        }
+
+        float total = 0;
         List<OrderDetail> orderDetails = new ArrayList<>();
         Order order = modelMapper.map(orderRequest, Order.class);
+        // OrderMapper's createAt is a constant captured when the mapping was registered
+        order.setCreateAt(new Date());
         order.setOrderDetails(orderDetails);
         order.setAccount(accountUtils.getCurrentAccount());
 
-        for(OrderDetailRequest orderDetailRequest: orderRequest.getDetails()) {
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            Product product = products.get(line.getKey());
+            if (product == null || product.isDeleted()) {
+                throw new NotFoundException("Product not found: " + line.getKey());
+            }
             OrderDetail orderDetail = new OrderDetail();
-            Product product = productRepository.findProductById(orderDetailRequest.getProductId());
+            orderDetail.setProduct(product);
+            orderDetail.setQuantity(line.getValue());
+            orderDetail.setPrice(product.getPrice());
+            orderDetail.setOrder(order);
+            orderDetails.add(orderDetail);
+            total += orderDetail.getPrice() * orderDetail.getQuantity();
+        }
+        order.setTotal(total);
 
-            if(product.getQuantity() >= orderDetailRequest.getQuantity()) {
-                orderDetail.setProduct(product);
-                orderDetail.setQuantity(orderDetailRequest.getQuantity());
-                orderDetail.setPrice(product.getPrice());
-                orderDetail.setOrder(order);
-                orderDetails.add(orderDetail);
+        // a product turning hot while the order was being reserved sends the whole reservation round again
+        Order newOrder = null;
+        for (int attempt = 1; newOrder == null; attempt++) {
+            try {
+                newOrder = reserveAndSave(order, orderDetails, quantities, products, onSaved);
+            } catch (StockPathChanged e) {
+                if (attempt == MAX_RESERVE_ATTEMPTS) {
+                    throw new RuntimeException("Stock of the ordered products is being moved, please try again");
+                }
+            }
+        }
 
-                product.setQuantity(product.getQuantity() - orderDetailRequest.getQuantity());
-                productRepository.save(product);
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            productCatalogIndex.adjustQuantity(line.getKey(), -line.getValue());
+        }
+        orderExpiryService.schedule(newOrder.getId(), newOrder.getCreateAt());
+        orderHistoryService.invalidate(newOrder.getAccount().getId());
+        cartService.removeOrdered(newOrder.getAccount().getId(), quantities.keySet());
+        return newOrder;
+    }
 
-                total += orderDetail.getPrice() * orderDetail.getQuantity();
+    // flash-sale products are reserved from their in-memory counters, the rest in MySQL
+    private Order reserveAndSave(Order order, List<OrderDetail> orderDetails, Map<Long, Integer> quantities,
+                                 Map<Long, Product> products, Consumer<Order> onSaved) {
+        Map<Long, Integer> reserved = new HashMap<>();
+        List<Map.Entry<Long, Integer>> lines = new ArrayList<>();
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            if (!hotStockService.isHot(line.getKey())) {
+                lines.add(line);
+            } else if (hotStockService.reserve(line.getKey(), line.getValue())) {
+                reserved.put(line.getKey(), line.getValue());
             } else {
-                throw new RuntimeException("Quantity is not enough");
+                reserved.forEach(hotStockService::abort);
+                throw new RuntimeException("Quantity is not enough for product " + products.get(line.getKey()).getName());
             }
         }
-        
-        order.setTotal(total);
-        // Save order first to get ID
-        Order newOrder = orderRepository.save(order);
-        
-        // Generate payment URL based on payment method
-        String paymentMethod = orderRequest.getPaymentMethod();
-        System.out.println("Creating order with payment method: " + paymentMethod);
-        
+        for (OrderDetail orderDetail : orderDetails) {
+            orderDetail.setStockPending(reserved.containsKey(orderDetail.getProduct().getId()));
+        }
+
+        // reserve the stock and save the order atomically; a short line rolls everything back
+        Order newOrder;
         try {
-            if (paymentMethod != null && paymentMethod.equals("MOMO")) {
-                System.out.println("Generating MoMo payment URL for order #" + newOrder.getId());
-                String momoPaymentUrl = momoPaymentService.createPaymentRequest(newOrder, "Payment for order #" + newOrder.getId());
-                System.out.println("Generated MoMo payment URL: " + momoPaymentUrl);
-                return momoPaymentUrl;
-            } else if (paymentMethod != null && paymentMethod.equals("VNPAY")) {
-                // Using VNPay to process MB Bank transfer
-                System.out.println("Processing MB Bank transfer payment for order #" + newOrder.getId());
-                return createURLPayment(newOrder);
-            } else {
-                // Fallback to default payment gateway
-                System.out.println("Using default payment method for order #" + newOrder.getId());
-        return createURLPayment(newOrder);
-    }
-        } catch (Exception e) {
-            // Log error and update order status
-            System.err.println("Error creating payment: " + e.getMessage());
-            e.printStackTrace();
-            
-            // Update order status to indicate payment error
-            newOrder.setStatus(OrderStatus.IN_PROCESS);
-            orderRepository.save(newOrder);
-            
-            throw e; // Rethrow to let controller handle it
+            newOrder = transactionTemplate.execute(status -> {
+                if (!lines.isEmpty()) {
+                    int[][] updated = jdbcTemplate.batchUpdate(
+                            "UPDATE product SET quantity = quantity - ? WHERE id = ? AND quantity >= ? AND is_deleted = false",
+                            lines, lines.size(), (statement, line) -> {
+                                statement.setInt(1, line.getValue());
+                                statement.setLong(2, line.getKey());
+                                statement.setInt(3, line.getValue());
+                            });
+                    for (int i = 0; i < lines.size(); i++) {
+                        if (updated[0][i] == 0) {
+                            throw new RuntimeException("Quantity is not enough for product " + products.get(lines.get(i).getKey()).getName());
+                        }
+                    }
+                    // the row locks are ours now: a product marked hot before we got them was seeded without this order
+                    for (Map.Entry<Long, Integer> line : lines) {
+                        if (hotStockService.isHot(line.getKey())) {
+                            throw new StockPathChanged();
+                        }
+                    }
+                }
+                Order saved = orderRepository.save(order);
+                onSaved.accept(saved);
+                return saved;
+            });
+        } catch (RuntimeException e) {
+            reserved.forEach(hotStockService::abort);
+            throw e;
         }
+        reserved.keySet().forEach(hotStockService::confirm);
+        return newOrder;
     }
 
-    public String createURLPayment(Order order) throws Exception {
-        String vnp_Version = "2.1.0";
-        String vnp_Command = "pay";
-        String vnp_TxnRef = String.valueOf(order.getId());
-        String vnp_IpAddr = "127.0.0.1";
-        String vnp_TmnCode = "K2035S4C";
-        String vnp_Locale = "vn";
-        String vnp_CurrCode = "VND";
-        String vnp_OrderType = "other";
-        String vnp_OrderInfo = "Payment for order #" + order.getId();
-        String vnp_SecretKey = "6E93KTQ6EHNWFUIIIGJW3S9URPTN4MOU";
-        String vnp_PayUrl = "https://sandbox.vnpayment.vn/paymentv2/vpcpay.html";
-        
-        // Force bank transfer/ATM form to be shown directly
-        String vnp_CardType = "ATM";
-        String vnp_BankCode = "MBBANK"; // Explicitly select MB Bank
-        
-        long amount = Math.round(order.getTotal() * 100);
-        
-        Map<String, String> vnp_Params = new HashMap<>();
-        vnp_Params.put("vnp_Version", vnp_Version);
-        vnp_Params.put("vnp_Command", vnp_Command);
-        vnp_Params.put("vnp_TmnCode", vnp_TmnCode);
-        vnp_Params.put("vnp_Amount", String.valueOf(amount));
-        vnp_Params.put("vnp_BankCode", vnp_BankCode);
-        vnp_Params.put("vnp_CardType", vnp_CardType);
-        vnp_Params.put("vnp_Payment_Type", vnp_CardType);
-        vnp_Params.put("vnp_CreateDate", getFormattedDateTime());
-        vnp_Params.put("vnp_CurrCode", vnp_CurrCode);
-        vnp_Params.put("vnp_IpAddr", vnp_IpAddr);
-        vnp_Params.put("vnp_Locale", vnp_Locale);
-        vnp_Params.put("vnp_OrderInfo", vnp_OrderInfo);
-        vnp_Params.put("vnp_OrderType", vnp_OrderType);
-        vnp_Params.put("vnp_ReturnUrl", "http://localhost:5173/payment-result?orderId="+order.getId());
-        vnp_Params.put("vnp_TxnRef", vnp_TxnRef);
-        
-        // Add merchant information for better visibility
-        vnp_Params.put("vnp_Merchant", "SkinCare Shop K18");
-        
-        List<String> fieldNames = new ArrayList<>(vnp_Params.keySet());
-        Collections.sort(fieldNames);
-        
-        StringBuilder hashData = new StringBuilder();
-        StringBuilder query = new StringBuilder();
-        
-        Iterator<String> itr = fieldNames.iterator();
-        while (itr.hasNext()) {
-            String fieldName = itr.next();
-            String fieldValue = vnp_Params.get(fieldName);
-            if ((fieldValue != null) && (fieldValue.length() > 0)) {
-                hashData.append(fieldName);
-                hashData.append('=');
-                hashData.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII.toString()));
-                query.append(URLEncoder.encode(fieldName, StandardCharsets.US_ASCII.toString()));
-                query.append('=');
-                query.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII.toString()));
-                if (itr.hasNext()) {
-                    query.append('&');
-                    hashData.append('&');
-                }
-            }
+    private static final class StockPathChanged extends RuntimeException {
+        StockPathChanged() {
+            super(null, null, false, false);
         }
-        
-        String queryUrl = query.toString();
-        String vnp_SecureHash = hmacSHA512(vnp_SecretKey, hashData.toString());
-        queryUrl += "&vnp_SecureHash=" + vnp_SecureHash;
-        String paymentUrl = vnp_PayUrl + "?" + queryUrl;
-        
-        System.out.println("Created VNPay bank transfer URL: " + paymentUrl);
-        return paymentUrl;
     }
-    
-    private String hmacSHA512(String key, String data) throws Exception {
-        Mac sha512Hmac = Mac.getInstance("HmacSHA512");
-        SecretKeySpec secretKeySpec = new SecretKeySpec(key.getBytes(), "HmacSHA512");
-        sha512Hmac.init(secretKeySpec);
-        byte[] hmacData = sha512Hmac.doFinal(data.getBytes());
-        return bytesToHex(hmacData);
+
+    // Generate payment URL based on payment method
+    // unknown or missing methods fall back to VNPay, the default payment gateway
+    private PaymentGateway gateway(String paymentMethod) {
+        return paymentGateways.getOrDefault(paymentMethod, paymentGateways.get(VnPayPaymentService.METHOD));
     }
-    
-    private String bytesToHex(byte[] bytes) {
-        StringBuilder sb = new StringBuilder();
-        for (byte b : bytes) {
-            sb.append(String.format("%02x", b));
-        }
-        return sb.toString();
+
+    // cancels the orders that are still unpaid and puts their stock back; returns the ids actually cancelled
+    public List<Long> cancelUnpaid(Collection<Long> orderIds) {
+        Map<Long, Integer> released = new TreeMap<>();
+        Set<Long> accountIds = new HashSet<>();
+        List<Long> cancelled = transactionTemplate.execute(status -> {
+            List<Long> unpaid = new ArrayList<>();
+            namedParameterJdbcTemplate.query(
+                    "SELECT id, account_id FROM orders WHERE id IN (:ids) AND status = :status ORDER BY id FOR UPDATE",
+                    new MapSqlParameterSource("ids", orderIds).addValue("status", OrderStatus.IN_PROCESS.ordinal()),
+                    resultSet -> {
+                        unpaid.add(resultSet.getLong(1));
+                        accountIds.add(resultSet.getLong(2));
+                    });
+            if (unpaid.isEmpty()) {
+                return unpaid;
+            }
+            namedParameterJdbcTemplate.update("UPDATE orders SET status = :status, version = version + 1 WHERE id IN (:ids)",
+                    new MapSqlParameterSource("ids", unpaid).addValue("status", OrderStatus.CANCEL.ordinal()));
+
+            // lines still pending in the hot-stock flusher never reached product.quantity: just drop them
+            Map<Long, Integer> restore = new TreeMap<>();
+            List<Long> pending = new ArrayList<>();
+            namedParameterJdbcTemplate.query(
+                    "SELECT id, product_id, quantity, stock_pending FROM order_detail WHERE order_id IN (:ids) FOR UPDATE",
+                    new MapSqlParameterSource("ids", unpaid),
+                    resultSet -> {
+                        released.merge(resultSet.getLong(2), resultSet.getInt(3), Integer::sum);
+                        if (resultSet.getBoolean(4)) {
+                            pending.add(resultSet.getLong(1));
+                        } else {
+                            restore.merge(resultSet.getLong(2), resultSet.getInt(3), Integer::sum);
+                        }
+                    });
+            if (!pending.isEmpty()) {
+                namedParameterJdbcTemplate.update("UPDATE order_detail SET stock_pending = false WHERE id IN (:ids)",
+                        new MapSqlParameterSource("ids", pending));
+            }
+            // hot counters change under the product row locks, so a concurrent (re)seed counts these units once
+            namedParameterJdbcTemplate.queryForList("SELECT id FROM product WHERE id IN (:ids) ORDER BY id FOR UPDATE",
+                    new MapSqlParameterSource("ids", released.keySet()), Long.class);
+            List<Map.Entry<Long, Integer>> products = new ArrayList<>(restore.entrySet());
+            jdbcTemplate.batchUpdate("UPDATE product SET quantity = quantity + ? WHERE id = ?",
+                    products, products.size(), (statement, product) -> {
+                        statement.setInt(1, product.getValue());
+                        statement.setLong(2, product.getKey());
+                    });
+            released.forEach(hotStockService::release);
+            return unpaid;
+        });
+
+        released.forEach((productId, units) -> productCatalogIndex.adjustQuantity(productId, units));
+        orderHistoryService.invalidate(accountIds);
+        return cancelled;
     }
 
+    // moves one order along the transition table; repeating the current status is a no-op
     public Order updateStatus(OrderStatus orderStatus, long id){
+        if (orderStatus == OrderStatus.CANCEL) {
+            // cancelling puts the stock back, which only the set-based path does
+            List<Long> cancelled = cancelUnpaid(List.of(id));
+            Order order = orderRepository.findOrderById(id);
+            if (order == null) {
+                throw new NotFoundException("Order not found: " + id);
+            }
+            if (cancelled.isEmpty() && order.getStatus() != OrderStatus.CANCEL) {
+                throw new OrderStatusException("Order #" + id + " cannot change from " + order.getStatus() + " to " + orderStatus);
+            }
+            return order;
+        }
+
         Order order = orderRepository.findOrderById(id);
+        if (order == null) {
+            throw new NotFoundException("Order not found: " + id);
+        }
+        OrderStatus previous = order.getStatus();
+        if (previous == orderStatus) {
+            return order;
+        }
+        if (!previous.canTransitionTo(orderStatus)) {
+            throw new OrderStatusException("Order #" + id + " cannot change from " + previous + " to " + orderStatus);
+        }
         order.setStatus(orderStatus);
-        return orderRepository.save(order);
+        // the version check makes a concurrent change fail here instead of being overwritten
+        Order saved = orderRepository.saveAndFlush(order);
+        if (order.getAccount() != null) {
+            orderHistoryService.invalidate(order.getAccount().getId());
+        }
+
+        // paid orders count as sales for the routine ranking
+        if (orderStatus == OrderStatus.PAID) {
+            for (OrderDetail detail : order.getOrderDetails()) {
+                productCatalogIndex.addSales(detail.getProduct().getId(), detail.getQuantity());
+            }
+        }
+        return saved;
+    }
+
+    // moves every order that may take the transition with one UPDATE; the others are reported as skipped
+    public OrderStatusResponse updateStatuses(OrderStatusRequest request) {
+        if (request.getStatus() == null || request.getIds() == null || request.getIds().isEmpty()) {
+            throw new RuntimeException("Status and at least one order id are required");
+        }
+        if (request.getIds().size() > MAX_BULK_ORDERS) {
+            throw new RuntimeException("At most " + MAX_BULK_ORDERS + " orders can be updated at once");
+        }
+        Set<Long> ids = new TreeSet<>(request.getIds());
+        OrderStatus target = request.getStatus();
+
+        List<Long> updated;
+        if (target == OrderStatus.CANCEL) {
+            updated = cancelUnpaid(ids);
+        } else {
+            updated = transition(ids, target);
+        }
+
+        List<Long> skipped = new ArrayList<>(ids);
+        skipped.removeAll(new HashSet<>(updated));
+        return new OrderStatusResponse(target, updated, skipped);
+    }
+
+    // payment confirmations end here, from redirects and gateway notifications alike: whichever comes
+    // first moves the order to PAID, the other finds it paid. True when the order is PAID afterwards.
+    public boolean markPaid(long orderId) {
+        if (!transition(List.of(orderId), OrderStatus.PAID).isEmpty()) {
+            return true;
+        }
+        List<Integer> status = jdbcTemplate.queryForList("SELECT status FROM orders WHERE id = ?", Integer.class, orderId);
+        return !status.isEmpty() && status.get(0) == OrderStatus.PAID.ordinal();
     }
 
-    public List<Order> getOrdersByUser() {
-        Account account = accountUtils.getCurrentAccount();
-        return orderRepository.findAllByAccountId(account.getId());
+    // one conditional UPDATE: an unpaid order becomes PAID only when the amount paid (VND) matches its total.
+    // True when the order is PAID afterwards, by this call or an earlier confirmation.
+    public boolean markPaid(long orderId, long amount) {
+        int updated = jdbcTemplate.update("UPDATE orders SET status = ?, version = version + 1 " +
+                        "WHERE id = ? AND status = ? AND ROUND(total) = ?",
+                OrderStatus.PAID.ordinal(), orderId, OrderStatus.IN_PROCESS.ordinal(), amount);
+        if (updated == 0) {
+            List<Integer> status = jdbcTemplate.queryForList("SELECT status FROM orders WHERE id = ?", Integer.class, orderId);
+            return !status.isEmpty() && status.get(0) == OrderStatus.PAID.ordinal();
+        }
+        jdbcTemplate.query("SELECT product_id, SUM(quantity) FROM order_detail WHERE order_id = ? GROUP BY product_id",
+                resultSet -> {
+                    productCatalogIndex.addSales(resultSet.getLong(1), resultSet.getInt(2));
+                }, orderId);
+        orderHistoryService.invalidate(jdbcTemplate.queryForList("SELECT account_id FROM orders WHERE id = ?", Long.class, orderId));
+        return true;
     }
 
-    public List<Order> getAll() {
-        return orderRepository.findAll();
+    // set-based transition for statuses that do not touch stock
+    private List<Long> transition(Collection<Long> orderIds, OrderStatus target) {
+        List<Integer> sources = new ArrayList<>();
+        for (OrderStatus source : OrderStatus.sourcesOf(target)) {
+            sources.add(source.ordinal());
+        }
+        if (sources.isEmpty()) {
+            return List.of();
+        }
+
+        Set<Long> accountIds = new HashSet<>();
+        Map<Long, Integer> sold = new HashMap<>();
+        List<Long> changed = transactionTemplate.execute(status -> {
+            List<Long> locked = new ArrayList<>();
+            namedParameterJdbcTemplate.query(
+                    "SELECT id, account_id FROM orders WHERE id IN (:ids) AND status IN (:sources) ORDER BY id FOR UPDATE",
+                    new MapSqlParameterSource("ids", orderIds).addValue("sources", sources),
+                    resultSet -> {
+                        locked.add(resultSet.getLong(1));
+                        accountIds.add(resultSet.getLong(2));
+                    });
+            if (locked.isEmpty()) {
+                return locked;
+            }
+            namedParameterJdbcTemplate.update("UPDATE orders SET status = :status, version = version + 1 WHERE id IN (:ids)",
+                    new MapSqlParameterSource("ids", locked).addValue("status", target.ordinal()));
+            if (target == OrderStatus.PAID) {
+                namedParameterJdbcTemplate.query(
+                        "SELECT product_id, SUM(quantity) FROM order_detail WHERE order_id IN (:ids) GROUP BY product_id",
+                        new MapSqlParameterSource("ids", locked),
+                        resultSet -> {
+                            sold.put(resultSet.getLong(1), resultSet.getInt(2));
+                        });
+            }
+            return locked;
+        });
+
+        sold.forEach(productCatalogIndex::addSales);
+        orderHistoryService.invalidate(accountIds);
+        return changed;
     }
 
-    private String getFormattedDateTime() {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
-        return LocalDateTime.now().format(formatter);
+    public OrderHistoryPageResponse getOrdersByUser(Long cursor, Integer size) {
+        int pageSize = size == null ? OrderHistoryService.DEFAULT_PAGE_SIZE
+                : Math.max(1, Math.min(size, OrderHistoryService.MAX_PAGE_SIZE));
+        return orderHistoryService.page(accountUtils.getCurrentAccountId(), cursor, pageSize);
     }
 }
@@ -0,0 +1,163 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.PaymentAttempt;
+import com.example.demo.entity.response.PaymentGatewayStatsResponse;
+import com.example.demo.enums.PaymentAttemptKind;
+import com.example.demo.exception.exceptions.NotFoundException;
+import com.example.demo.repository.PaymentAttemptRepository;
+import com.example.demo.utils.AccountUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ledger of payment attempts: every gateway request, redirect and callback.
+ *
+ * Recording never waits on the database. Attempts go into a bounded queue, and one drain
+ * thread writes whatever has piled up as a single JDBC batch, so a burst of callbacks costs
+ * one batched INSERT instead of a round trip each. When the queue is full, attempts are
+ * dropped and counted rather than slowing payments down. What is still queued at shutdown
+ * is written before the thread stops.
+ */
+@Service
+public class PaymentAttemptService {
+
+    private static final int BATCH_SIZE = 500;
+    private static final int MAX_MESSAGE_LENGTH = 255;
+
+    private static final String INSERT = "INSERT INTO payment_attempt " +
+            "(order_id, gateway, kind, amount, trans_id, signature_valid, success, latency_ms, message, create_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String STATS = "SELECT gateway, kind, COUNT(*), SUM(success), SUM(signature_valid = false), " +
+            "AVG(latency_ms), MAX(latency_ms) FROM payment_attempt WHERE create_at >= ? " +
+            "GROUP BY gateway, kind ORDER BY gateway, kind";
+
+    @Value("${payment.attempts.queue:10000}")
+    int queueCapacity;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PaymentAttemptRepository paymentAttemptRepository;
+
+    @Autowired
+    AccountUtils accountUtils;
+
+    private BlockingQueue<PaymentAttempt> queue;
+    private Thread drain;
+    private volatile boolean running = true;
+    private final AtomicLong dropped = new AtomicLong();
+
+    @PostConstruct
+    void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        drain = new Thread(this::drain, "payment-attempts");
+        drain.setDaemon(true);
+        drain.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        drain.interrupt();
+        drain.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    // startNanos is System.nanoTime() when the exchange began; the latency is measured up to now
+    public void record(String gateway, PaymentAttemptKind kind, Long orderId, Long amount, String transId,
+                       Boolean signatureValid, boolean success, long startNanos, String message) {
+        PaymentAttempt attempt = new PaymentAttempt();
+        attempt.setGateway(gateway);
+        attempt.setKind(kind);
+        attempt.setOrderId(orderId);
+        attempt.setAmount(amount);
+        attempt.setTransId(transId);
+        attempt.setSignatureValid(signatureValid);
+        attempt.setSuccess(success);
+        attempt.setLatencyMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        attempt.setMessage(message == null || message.length() <= MAX_MESSAGE_LENGTH ? message : message.substring(0, MAX_MESSAGE_LENGTH));
+        attempt.setCreateAt(new Date());
+        if (!queue.offer(attempt)) {
+            long total = dropped.incrementAndGet();
+            if (total == 1 || total % 1000 == 0) {
+                System.err.println("Payment attempt queue full, " + total + " attempts dropped so far");
+            }
+        }
+    }
+
+    // GET every attempt of one order, oldest first
+    public List<PaymentAttempt> history(long orderId) {
+        // customers only see their own orders; someone else's order looks the same as a missing one
+        List<Long> owner = jdbcTemplate.queryForList("SELECT account_id FROM orders WHERE id = ?", Long.class, orderId);
+        if (owner.isEmpty() || !accountUtils.isStaff() && !owner.get(0).equals(accountUtils.getCurrentAccountId())) {
+            throw new NotFoundException("Order not found: " + orderId);
+        }
+        return paymentAttemptRepository.findByOrderIdOrderById(orderId);
+    }
+
+    // GET success rate and latency per gateway and kind of attempt over the last hours
+    public List<PaymentGatewayStatsResponse> stats(int hours) {
+        Timestamp since = new Timestamp(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(hours));
+        return jdbcTemplate.query(STATS, (resultSet, rowNum) -> {
+            long attempts = resultSet.getLong(3);
+            long succeeded = resultSet.getLong(4);
+            return new PaymentGatewayStatsResponse(resultSet.getString(1), PaymentAttemptKind.valueOf(resultSet.getString(2)),
+                    attempts, succeeded, attempts == 0 ? 0 : (double) succeeded / attempts,
+                    resultSet.getLong(5), resultSet.getDouble(6), resultSet.getLong(7));
+        }, since);
+    }
+
+    private void drain() {
+        List<PaymentAttempt> batch = new ArrayList<>(BATCH_SIZE);
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch, BATCH_SIZE - 1);
+            write(batch);
+        }
+        // shutting down: write what is left
+        while (queue.drainTo(batch, BATCH_SIZE) > 0) {
+            write(batch);
+        }
+    }
+
+    private void write(List<PaymentAttempt> batch) {
+        try {
+            jdbcTemplate.batchUpdate(INSERT, batch, batch.size(), (statement, attempt) -> {
+                statement.setObject(1, attempt.getOrderId(), Types.BIGINT);
+                statement.setString(2, attempt.getGateway());
+                statement.setString(3, attempt.getKind().name());
+                statement.setObject(4, attempt.getAmount(), Types.BIGINT);
+                statement.setString(5, attempt.getTransId());
+                statement.setObject(6, attempt.getSignatureValid(), Types.BOOLEAN);
+                statement.setBoolean(7, attempt.isSuccess());
+                statement.setLong(8, attempt.getLatencyMs());
+                statement.setString(9, attempt.getMessage());
+                statement.setTimestamp(10, new Timestamp(attempt.getCreateAt().getTime()));
+            });
+        } catch (RuntimeException e) {
+            // the ledger is best effort: payments already went through, only their trace is lost
+            System.err.println("Could not write " + batch.size() + " payment attempts: " + e.getMessage());
+        } finally {
+            batch.clear();
+        }
+    }
+}
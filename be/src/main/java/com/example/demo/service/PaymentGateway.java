@@ -0,0 +1,34 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Order;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+// a payment provider checkout can send the customer to; OrderService picks one by method()
+public interface PaymentGateway {
+
+    // the paymentMethod value of an OrderRequest that selects this gateway, e.g. "MOMO"
+    String method();
+
+    // the URL the customer is redirected to in order to pay the order
+    String createPaymentUrl(Order order) throws Exception;
+
+    // runs createPaymentUrl on the executor; gateways with a non-blocking client override it
+    default CompletableFuture<String> createPaymentUrlAsync(Order order, Executor executor) {
+        CompletableFuture<String> paymentUrl = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    paymentUrl.complete(createPaymentUrl(order));
+                } catch (Exception e) {
+                    paymentUrl.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            paymentUrl.completeExceptionally(e);
+        }
+        return paymentUrl;
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.request.MomoNotificationRequest;
+import com.example.demo.enums.PaymentAttemptKind;
+import com.example.demo.enums.PaymentNotificationStatus;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gateway payment notifications (IPN), received through an inbox table.
+ *
+ * Receiving only checks the signature and stores the notification with INSERT IGNORE on
+ * the unique (gateway, trans_id) pair, so the gateway gets its answer right away and a
+ * redelivered notification is dropped there. Stored notifications are applied one at a
+ * time by a single worker thread; a row leaves RECEIVED exactly once, and marking the
+ * order PAID is itself idempotent, so a notification racing the browser redirect pays
+ * the order once. Rows left RECEIVED by a crash are picked up again at startup.
+ */
+@Service
+public class PaymentNotificationService {
+
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long RETRY_SECONDS = 5;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    MomoPaymentService momoPaymentService;
+
+    @Autowired
+    OrderService orderService;
+
+    @Autowired
+    PaymentAttemptService paymentAttemptService;
+
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "payment-notification");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        List<Long> pending = jdbcTemplate.queryForList("SELECT id FROM payment_notification WHERE status = ? ORDER BY id",
+                Long.class, PaymentNotificationStatus.RECEIVED.name());
+        if (!pending.isEmpty()) {
+            System.out.println("Replaying " + pending.size() + " unprocessed payment notifications");
+        }
+        for (Long id : pending) {
+            worker.execute(() -> process(id, 1));
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        worker.shutdownNow();
+    }
+
+    // POST from MoMo; anything signed by MoMo is stored, paid or not
+    public void receiveMomo(MomoNotificationRequest notification) {
+        long start = System.nanoTime();
+        long orderId = MomoPaymentService.orderIdOf(notification.getOrderId());
+        boolean valid = momoPaymentService.verifyNotification(notification);
+        paymentAttemptService.record(MomoPaymentService.METHOD, PaymentAttemptKind.CALLBACK, orderId < 0 ? null : orderId,
+                notification.getAmount(), notification.getTransId() == null ? null : String.valueOf(notification.getTransId()),
+                valid, valid && Integer.valueOf(0).equals(notification.getResultCode()), start, notification.getMessage());
+        if (!valid) {
+            throw new RuntimeException("Invalid MoMo notification signature");
+        }
+        if (notification.getTransId() == null || notification.getAmount() == null || notification.getResultCode() == null) {
+            throw new RuntimeException("MoMo notification without transId, amount or resultCode");
+        }
+        receive(MomoPaymentService.METHOD, String.valueOf(notification.getTransId()), orderId,
+                notification.getAmount(), notification.getResultCode());
+    }
+
+    // stores a verified notification and queues it; false when the transaction was already received
+    public boolean receive(String gateway, String transId, long orderId, long amount, int resultCode) {
+        KeyHolder key = new GeneratedKeyHolder();
+        int inserted = jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement("INSERT IGNORE INTO payment_notification " +
+                    "(gateway, trans_id, order_id, amount, result_code, status, received_at) VALUES (?, ?, ?, ?, ?, ?, NOW())",
+                    Statement.RETURN_GENERATED_KEYS);
+            statement.setString(1, gateway);
+            statement.setString(2, transId);
+            statement.setLong(3, orderId);
+            statement.setLong(4, amount);
+            statement.setInt(5, resultCode);
+            statement.setString(6, PaymentNotificationStatus.RECEIVED.name());
+            return statement;
+        }, key);
+        if (inserted == 0) {
+            System.out.println("Duplicate " + gateway + " notification for transaction " + transId + " ignored");
+            return false;
+        }
+        long id = key.getKey().longValue();
+        worker.execute(() -> process(id, 1));
+        return true;
+    }
+
+    private void process(long id, int attempt) {
+        try {
+            apply(id);
+        } catch (RuntimeException e) {
+            if (attempt >= MAX_ATTEMPTS) {
+                // stays RECEIVED, the next startup tries again
+                System.err.println("Giving up on payment notification " + id + " for now: " + e.getMessage());
+                return;
+            }
+            System.err.println("Payment notification " + id + " failed, retrying: " + e.getMessage());
+            worker.schedule(() -> process(id, attempt + 1), RETRY_SECONDS * attempt, TimeUnit.SECONDS);
+        }
+    }
+
+    private void apply(long id) {
+        List<long[]> rows = jdbcTemplate.query(
+                "SELECT order_id, amount, result_code FROM payment_notification WHERE id = ? AND status = ?",
+                (resultSet, rowNum) -> new long[]{resultSet.getLong(1), resultSet.getLong(2), resultSet.getInt(3)},
+                id, PaymentNotificationStatus.RECEIVED.name());
+        if (rows.isEmpty()) {
+            return; // already processed
+        }
+        long orderId = rows.get(0)[0];
+        long amount = rows.get(0)[1];
+        long resultCode = rows.get(0)[2];
+
+        PaymentNotificationStatus outcome;
+        String note = null;
+        if (resultCode != 0) {
+            outcome = PaymentNotificationStatus.SKIPPED;
+            note = "Payment not successful, result code " + resultCode;
+        } else {
+            List<Float> total = jdbcTemplate.queryForList("SELECT total FROM orders WHERE id = ?", Float.class, orderId);
+            if (total.isEmpty()) {
+                outcome = PaymentNotificationStatus.REJECTED;
+                note = "Unknown order " + orderId;
+            } else if (Math.round(total.get(0)) != amount) {
+                outcome = PaymentNotificationStatus.REJECTED;
+                note = "Amount " + amount + " does not match order total " + Math.round(total.get(0));
+            } else if (orderService.markPaid(orderId)) {
+                outcome = PaymentNotificationStatus.APPLIED;
+            } else {
+                outcome = PaymentNotificationStatus.SKIPPED;
+                note = "Order " + orderId + " can no longer be paid";
+            }
+        }
+
+        jdbcTemplate.update("UPDATE payment_notification SET status = ?, note = ?, processed_at = NOW() WHERE id = ? AND status = ?",
+                outcome.name(), note, id, PaymentNotificationStatus.RECEIVED.name());
+        if (outcome == PaymentNotificationStatus.REJECTED) {
+            System.err.println("Payment notification " + id + " rejected: " + note);
+        }
+    }
+}
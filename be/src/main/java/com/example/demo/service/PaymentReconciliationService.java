@@ -0,0 +1,294 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.response.ReconciliationResponse;
+import com.example.demo.enums.OrderStatus;
+import com.example.demo.enums.PaymentMismatch;
+import com.example.demo.utils.CsvReader;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Reconciles gateway settlement files against the orders table.
+ *
+ * Settlement files are CSV with a header (gateway, transId, orderId, amount, status) and
+ * are dropped into payment.reconciliation.dir, a local stand-in for the gateways' file
+ * drops. A file is streamed and cut into chunks that are checked in parallel, each with
+ * one IN query on orders; only a few chunks are held in memory at a time. Lines that
+ * disagree with their order go to a mismatch report, then the file and its report move
+ * to done/. Orders are never changed here, the report is for people to act on.
+ */
+@Service
+public class PaymentReconciliationService {
+
+    private static final List<String> REPORT_COLUMNS = List.of(
+            "line", "gateway", "transId", "orderId", "amount", "orderTotal", "orderStatus", "mismatch");
+
+    private static final OrderStatus[] STATUSES = OrderStatus.values();
+
+    @Value("${payment.reconciliation.dir:settlements}")
+    String dropDirectory;
+
+    @Value("${payment.reconciliation.chunk-size:1000}")
+    int chunkSize;
+
+    @Value("${payment.reconciliation.threads:4}")
+    int threads;
+
+    @Autowired
+    NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private ExecutorService chunkExecutor;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger counter = new AtomicInteger();
+        chunkExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "reconciliation-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        chunkExecutor.shutdownNow();
+    }
+
+    @Scheduled(fixedDelayString = "${payment.reconciliation.poll-ms:300000}")
+    public void poll() {
+        try {
+            reconcileDropDirectory();
+        } catch (IOException | RuntimeException e) {
+            // the file stays in the drop directory and is tried again on the next poll
+            System.err.println("Payment reconciliation failed: " + e.getMessage());
+        }
+    }
+
+    // reconciles every settlement file waiting in the drop directory, in name order
+    public synchronized List<ReconciliationResponse> reconcileDropDirectory() throws IOException {
+        Path directory = Path.of(dropDirectory);
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        List<Path> files;
+        try (Stream<Path> entries = Files.list(directory)) {
+            files = entries.filter(file -> Files.isRegularFile(file) && file.getFileName().toString().endsWith(".csv"))
+                    .sorted()
+                    .toList();
+        }
+
+        Path done = directory.resolve("done");
+        List<ReconciliationResponse> results = new ArrayList<>();
+        for (Path file : files) {
+            Files.createDirectories(done);
+            String name = file.getFileName().toString();
+            Path report = done.resolve(name.substring(0, name.length() - ".csv".length()) + ".mismatches.csv");
+            ReconciliationResponse result;
+            try (Reader settlement = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+                 Writer out = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+                result = reconcile(settlement, out);
+            }
+            Files.move(file, done.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+            result.setFile(name);
+            result.setReport(report.toString());
+            System.out.println("Reconciled " + name + ": " + result.getRows() + " lines, " + result.getMismatched() + " mismatched");
+            results.add(result);
+        }
+        return results;
+    }
+
+    // streams one settlement file, writing the lines that do not match their order to report
+    public ReconciliationResponse reconcile(Reader settlement, Writer report) throws IOException {
+        ReconciliationResponse result = new ReconciliationResponse();
+        report.write(String.join(",", REPORT_COLUMNS));
+        report.write("\r\n");
+
+        CsvReader csv = new CsvReader(settlement);
+        List<String> header = csv.next();
+        if (header == null) {
+            return result;
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim(), i);
+        }
+
+        // bounds the chunks read ahead of the checks
+        Semaphore window = new Semaphore(threads * 2);
+        List<Future<?>> checks = new ArrayList<>();
+        List<SettlementLine> chunk = new ArrayList<>(chunkSize);
+        try {
+            List<String> record;
+            while ((record = csv.next()) != null) {
+                if (record.size() == 1 && record.get(0).isBlank()) {
+                    continue;
+                }
+                result.setRows(result.getRows() + 1);
+                chunk.add(SettlementLine.parse(csv.getLine(), record, columns));
+                if (chunk.size() == chunkSize) {
+                    checks.add(submit(chunk, report, result, window));
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                checks.add(submit(chunk, report, result, window));
+            }
+            for (Future<?> check : checks) {
+                check.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Reconciliation interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw e.getCause() instanceof RuntimeException cause ? cause : new RuntimeException(e.getCause());
+        } finally {
+            for (Future<?> check : checks) {
+                check.cancel(true);
+            }
+        }
+        report.flush();
+        return result;
+    }
+
+    private Future<?> submit(List<SettlementLine> chunk, Writer report, ReconciliationResponse result,
+                             Semaphore window) throws InterruptedException {
+        window.acquire();
+        try {
+            return chunkExecutor.submit(() -> {
+                try {
+                    check(chunk, report, result);
+                } finally {
+                    window.release();
+                }
+                return null;
+            });
+        } catch (RejectedExecutionException e) {
+            window.release();
+            throw e;
+        }
+    }
+
+    private void check(List<SettlementLine> chunk, Writer report, ReconciliationResponse result) throws IOException {
+        Set<Long> orderIds = new HashSet<>();
+        for (SettlementLine line : chunk) {
+            if (line.orderId != null) {
+                orderIds.add(line.orderId);
+            }
+        }
+        // orderId -> {rounded total, status}
+        Map<Long, long[]> orders = new HashMap<>();
+        if (!orderIds.isEmpty()) {
+            namedParameterJdbcTemplate.query("SELECT id, ROUND(total), status FROM orders WHERE id IN (:ids)",
+                    new MapSqlParameterSource("ids", orderIds),
+                    resultSet -> {
+                        orders.put(resultSet.getLong(1), new long[]{resultSet.getLong(2), resultSet.getInt(3)});
+                    });
+        }
+
+        StringBuilder mismatched = new StringBuilder();
+        Map<PaymentMismatch, Long> counts = new EnumMap<>(PaymentMismatch.class);
+        for (SettlementLine line : chunk) {
+            long[] order = line.orderId == null ? null : orders.get(line.orderId);
+            PaymentMismatch mismatch = mismatch(line, order);
+            if (mismatch == null) {
+                continue;
+            }
+            counts.merge(mismatch, 1L, Long::sum);
+            mismatched.append(line.number).append(',')
+                    .append(ProductImportService.escape(line.gateway)).append(',')
+                    .append(ProductImportService.escape(line.transId)).append(',')
+                    .append(line.orderId == null ? "" : line.orderId).append(',')
+                    .append(line.amount == null ? "" : line.amount).append(',')
+                    .append(order == null ? "" : order[0]).append(',')
+                    .append(order == null ? "" : STATUSES[(int) order[1]]).append(',')
+                    .append(mismatch).append("\r\n");
+        }
+
+        long mismatchCount = counts.values().stream().mapToLong(Long::longValue).sum();
+        synchronized (report) {
+            report.write(mismatched.toString());
+        }
+        synchronized (result) {
+            result.setMatched(result.getMatched() + chunk.size() - mismatchCount);
+            result.setMismatched(result.getMismatched() + mismatchCount);
+            counts.forEach((kind, count) -> result.getMismatches().merge(kind, count, Long::sum));
+        }
+    }
+
+    // null when the line agrees with its order
+    private static PaymentMismatch mismatch(SettlementLine line, long[] order) {
+        if (line.orderId == null || line.amount == null) {
+            return PaymentMismatch.INVALID_LINE;
+        }
+        if (order == null) {
+            return PaymentMismatch.ORDER_NOT_FOUND;
+        }
+        OrderStatus status = STATUSES[(int) order[1]];
+        if (!line.success) {
+            return status == OrderStatus.PAID ? PaymentMismatch.PAID_NOT_SETTLED : null;
+        }
+        if (order[0] != line.amount) {
+            return PaymentMismatch.AMOUNT_MISMATCH;
+        }
+        return status == OrderStatus.PAID ? null : PaymentMismatch.NOT_MARKED_PAID;
+    }
+
+    private static final class SettlementLine {
+        long number;
+        String gateway;
+        String transId;
+        Long orderId;
+        Long amount;      // VND
+        boolean success;  // status SUCCESS, any other status is a failed payment
+
+        static SettlementLine parse(long number, List<String> record, Map<String, Integer> columns) {
+            SettlementLine line = new SettlementLine();
+            line.number = number;
+            line.gateway = value(record, columns, "gateway");
+            line.transId = value(record, columns, "transId");
+            line.success = "SUCCESS".equalsIgnoreCase(value(record, columns, "status"));
+            try {
+                String orderId = value(record, columns, "orderId");
+                line.orderId = orderId == null ? null : Long.parseLong(orderId);
+                String amount = value(record, columns, "amount");
+                line.amount = amount == null ? null : new BigDecimal(amount).setScale(0, RoundingMode.HALF_UP).longValueExact();
+            } catch (NumberFormatException | ArithmeticException e) {
+                line.orderId = null;
+            }
+            return line;
+        }
+
+        private static String value(List<String> record, Map<String, Integer> columns, String column) {
+            Integer index = columns.get(column);
+            if (index == null || index >= record.size()) {
+                return null;
+            }
+            String value = record.get(index).trim();
+            return value.isEmpty() ? null : value;
+        }
+    }
+}
@@ -0,0 +1,645 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Product;
+import com.example.demo.entity.ProductRatingSummary;
+import com.example.demo.entity.response.ProductResponse;
+import com.example.demo.enums.OrderStatus;
+import com.example.demo.enums.ProductSort;
+import com.example.demo.enums.RoutineStep;
+import com.example.demo.enums.SuitableType;
+import com.example.demo.model.ProductFilter;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.repository.OrderDetailRepository;
+import com.example.demo.repository.ProductRatingSummaryRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * In-memory index of the non-deleted catalog. Every facet (category, suitable type,
+ * routine step) is a bitmap over slots and every sort order is a precomputed slot
+ * permutation, so a filtered, sorted page is a handful of bitmap intersections plus a
+ * binary search for the cursor instead of a table scan. Name queries are answered by
+ * {@link ProductSearchIndex}, which this class keeps in step with the catalog.
+ *
+ * Entries carry every column a listing shows, so product reads are served as
+ * {@link ProductResponse}s straight from memory. Stock moves with every order and is
+ * kept in a separate map, so checkouts never force a snapshot rebuild.
+ *
+ * Writes are rare compared to reads: each write rebuilds an immutable snapshot and
+ * swaps it in, so readers never take a lock.
+ */
+@Component
+public class ProductCatalogIndex {
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    ProductRatingSummaryRepository productRatingSummaryRepository;
+
+    @Autowired
+    OrderDetailRepository orderDetailRepository;
+
+    @Autowired
+    ProductSearchIndex productSearchIndex;
+
+    @Autowired
+    RoutineRanking routineRanking;
+
+    @Autowired
+    CatalogVersion catalogVersion;
+
+    // guarded by "this"; the snapshot is rebuilt from it on every write
+    private final Map<Long, Entry> entries = new HashMap<>();
+
+    private volatile Snapshot snapshot = new Snapshot(List.of());
+
+    private final Map<Long, Integer> stock = new ConcurrentHashMap<>();
+
+    // units sold in paid orders, feeds the routine ranking
+    private final Map<Long, Long> sold = new ConcurrentHashMap<>();
+
+    // runs after RatingService has backfilled the rating summaries
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(1)
+    public synchronized void load() {
+        entries.clear();
+        stock.clear();
+        sold.clear();
+        productSearchIndex.clear();
+        routineRanking.clear();
+        ListingRows rows = new ListingRows(productRepository.findActiveListingRows());
+        for (Entry entry : rows.entries.values()) {
+            entries.put(entry.getId(), entry);
+            stock.put(entry.getId(), rows.quantities.get(entry.getId()));
+            productSearchIndex.index(entry.getId(), entry.getName(), entry.getCategoryId(), entry.getCategoryName());
+        }
+        for (ProductRatingSummary summary : productRatingSummaryRepository.findAll()) {
+            Entry entry = entries.get(summary.getProductId());
+            if (entry != null) {
+                entries.put(summary.getProductId(), entry.withRating(summary.getAverage(), summary.getRatingCount()));
+            }
+        }
+        for (Object[] row : orderDetailRepository.sumQuantityByProduct(OrderStatus.PAID)) {
+            sold.put(((Number) row[0]).longValue(), ((Number) row[1]).longValue());
+        }
+        for (Entry entry : entries.values()) {
+            routineRanking.put(entry, sold.getOrDefault(entry.getId(), 0L));
+        }
+        snapshot = new Snapshot(entries.values());
+        catalogVersion.bump();
+        System.out.println("Product catalog index loaded with " + entries.size() + " products");
+    }
+
+    // called after a product is created or updated
+    public synchronized void upsert(Product product) {
+        if (product.isDeleted()) {
+            remove(product.getId());
+            return;
+        }
+        Entry entry = Entry.of(product, entries.get(product.getId()));
+        entries.put(product.getId(), entry);
+        stock.put(product.getId(), product.getQuantity());
+        productSearchIndex.index(entry.getId(), entry.getName(), entry.getCategoryId(), entry.getCategoryName());
+        routineRanking.put(entry, sold.getOrDefault(entry.getId(), 0L));
+        snapshot = new Snapshot(entries.values());
+        catalogVersion.bump();
+    }
+
+    // called after a bulk write touched these products; reloads them with one query and rebuilds once
+    public synchronized void refresh(Collection<Long> productIds) {
+        ListingRows rows = new ListingRows(productRepository.findListingRowsByIds(productIds));
+        Map<Long, Entry> fresh = new HashMap<>();
+        for (Long productId : productIds) {
+            Entry entry = rows.entries.get(productId);
+            if (entry == null || rows.deleted.contains(productId)) {
+                entries.remove(productId);
+                stock.remove(productId);
+                productSearchIndex.remove(productId);
+                routineRanking.remove(productId);
+                continue;
+            }
+            Entry previous = entries.get(productId);
+            fresh.put(productId, previous == null ? entry : entry.withRating(previous.getAverageRating(), previous.getRatingCount()));
+            stock.put(productId, rows.quantities.get(productId));
+        }
+        List<Long> unrated = new ArrayList<>();
+        for (Long productId : fresh.keySet()) {
+            if (!entries.containsKey(productId)) {
+                unrated.add(productId);
+            }
+        }
+        if (!unrated.isEmpty()) {
+            for (ProductRatingSummary summary : productRatingSummaryRepository.findAllById(unrated)) {
+                fresh.computeIfPresent(summary.getProductId(),
+                        (id, entry) -> entry.withRating(summary.getAverage(), summary.getRatingCount()));
+            }
+        }
+        for (Entry entry : fresh.values()) {
+            entries.put(entry.getId(), entry);
+            productSearchIndex.index(entry.getId(), entry.getName(), entry.getCategoryId(), entry.getCategoryName());
+            routineRanking.put(entry, sold.getOrDefault(entry.getId(), 0L));
+        }
+        snapshot = new Snapshot(entries.values());
+        catalogVersion.bump();
+    }
+
+    // called after a product is soft-deleted
+    public synchronized void remove(long productId) {
+        productSearchIndex.remove(productId);
+        routineRanking.remove(productId);
+        stock.remove(productId);
+        if (entries.remove(productId) != null) {
+            snapshot = new Snapshot(entries.values());
+        }
+        catalogVersion.bump();
+    }
+
+    // called after a rating is added; ratings are never removed, so a lower count is an update that
+    // committed earlier but arrived late, and applying it would roll the average back
+    public synchronized void updateRating(long productId, double averageRating, long ratingCount) {
+        Entry entry = entries.get(productId);
+        if (entry != null && ratingCount > entry.getRatingCount()) {
+            Entry rated = entry.withRating(averageRating, ratingCount);
+            entries.put(productId, rated);
+            routineRanking.put(rated, sold.getOrDefault(productId, 0L));
+            snapshot = new Snapshot(entries.values());
+            catalogVersion.bump();
+        }
+    }
+
+    // called after a category is renamed
+    public synchronized void renameCategory(long categoryId, String categoryName) {
+        entries.replaceAll((id, entry) -> Objects.equals(entry.getCategoryId(), categoryId)
+                ? entry.withCategoryName(categoryName) : entry);
+        productSearchIndex.renameCategory(categoryId, categoryName);
+        snapshot = new Snapshot(entries.values());
+        catalogVersion.bump();
+    }
+
+    // called when an order becomes paid (positive units) or stops being paid (negative units)
+    public synchronized void addSales(long productId, long units) {
+        long total = sold.merge(productId, units, Long::sum);
+        Entry entry = entries.get(productId);
+        if (entry != null) {
+            routineRanking.put(entry, total);
+        }
+    }
+
+    // called after checkout or a cancellation changed the stock of a product;
+    // stock is not part of the catalog version, see CatalogVersion
+    public void setQuantity(long productId, int quantity) {
+        stock.computeIfPresent(productId, (id, current) -> quantity);
+    }
+
+    public void adjustQuantity(long productId, int delta) {
+        stock.computeIfPresent(productId, (id, current) -> current + delta);
+    }
+
+    // facets of a category as of the current snapshot, or null when it has no products
+    public CategoryFacets categoryFacets(long categoryId) {
+        return snapshot.facetsByCategory.get(categoryId);
+    }
+
+    public boolean inStock(long productId) {
+        return stock.getOrDefault(productId, 0) > 0;
+    }
+
+    // the read model of a non-deleted product, or null when it is not in the catalog
+    public ProductResponse get(long productId) {
+        Snapshot current = snapshot;
+        Integer slot = current.slotById.get(productId);
+        return slot == null ? null : toResponse(current.slots[slot], false);
+    }
+
+    // read models in the order of the ids; products outside the catalog
+    // (deleted ones included) are loaded with a single projection query
+    public List<ProductResponse> find(List<Long> ids) {
+        Map<Long, ProductResponse> found = new HashMap<>();
+        List<Long> misses = new ArrayList<>();
+        for (Long id : ids) {
+            ProductResponse response = get(id);
+            if (response != null) {
+                found.put(id, response);
+            } else {
+                misses.add(id);
+            }
+        }
+        if (!misses.isEmpty()) {
+            ListingRows rows = new ListingRows(productRepository.findListingRowsByIds(misses));
+            Map<Long, Entry> rated = new HashMap<>(rows.entries);
+            for (ProductRatingSummary summary : productRatingSummaryRepository.findAllById(rated.keySet())) {
+                rated.put(summary.getProductId(), rated.get(summary.getProductId())
+                        .withRating(summary.getAverage(), summary.getRatingCount()));
+            }
+            for (Entry entry : rated.values()) {
+                ProductResponse response = toResponse(entry, rows.deleted.contains(entry.getId()));
+                response.setQuantity(rows.quantities.get(entry.getId()));
+                found.put(entry.getId(), response);
+            }
+        }
+
+        List<ProductResponse> responses = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            ProductResponse response = found.get(id);
+            if (response != null) {
+                responses.add(response);
+            }
+        }
+        return responses;
+    }
+
+    // ids of all matching products, in the requested order
+    public List<ProductResponse> search(ProductFilter filter, ProductSort sort) {
+        Snapshot current = snapshot;
+        Map<Long, Double> scores = relevance(filter);
+        BitSet matches = current.match(filter, scores);
+
+        List<ProductResponse> products = new ArrayList<>(matches.cardinality());
+        for (int slot : current.ordering(sort, scores)) {
+            if (matches.get(slot)) {
+                products.add(toResponse(current.slots[slot], false));
+            }
+        }
+        return products;
+    }
+
+    // one keyset page: the cursor carries the sort key of the last row already returned
+    public CatalogPage page(ProductFilter filter, ProductSort sort, String cursor, int size) {
+        Snapshot current = snapshot;
+        Map<Long, Double> scores = relevance(filter);
+        BitSet matches = current.match(filter, scores);
+        int[] ordering = current.ordering(sort, scores);
+
+        int position = 0;
+        if (cursor != null && !cursor.isBlank()) {
+            Cursor after = decodeCursor(sort, cursor);
+            position = Snapshot.positionAfter(current, ordering, entry -> after.compareTo(sort, entry, scores));
+        }
+
+        List<ProductResponse> products = new ArrayList<>(size);
+        Entry last = null;
+        boolean hasMore = false;
+        for (; position < ordering.length; position++) {
+            if (!matches.get(ordering[position])) {
+                continue;
+            }
+            if (products.size() == size) {
+                hasMore = true;
+                break;
+            }
+            last = current.slots[ordering[position]];
+            products.add(toResponse(last, false));
+        }
+        return new CatalogPage(products, hasMore ? encodeCursor(sort, last, scores.getOrDefault(last.getId(), 0.0)) : null);
+    }
+
+    public int size() {
+        return snapshot.slots.length;
+    }
+
+    private Map<Long, Double> relevance(ProductFilter filter) {
+        if (filter.getName() == null || filter.getName().isBlank()) {
+            return Map.of();
+        }
+        return productSearchIndex.search(filter.getName());
+    }
+
+    private ProductResponse toResponse(Entry entry, boolean deleted) {
+        ProductResponse response = new ProductResponse();
+        response.setId(entry.getId());
+        response.setName(entry.getName());
+        response.setPrice(entry.getPrice());
+        response.setQuantity(stock.getOrDefault(entry.getId(), 0));
+        response.setImage(entry.getImage());
+        response.setCode(entry.getCode());
+        response.setDeleted(deleted);
+        if (entry.getCategoryId() != null) {
+            response.setCategory(new ProductResponse.CategorySummary(entry.getCategoryId(), entry.getCategoryName()));
+        }
+        response.setSuitableTypes(new ArrayList<>(entry.getSuitableTypes()));
+        response.setRoutineStep(entry.getRoutineStep());
+        response.setRating(entry.getAverageRating());
+        response.setReviewCount(entry.getRatingCount());
+        return response;
+    }
+
+    private static String encodeCursor(ProductSort sort, Entry last, double score) {
+        String raw = sort.name() + "|" + last.getId() + "|" + last.getPrice() + "|" + last.getAverageRating()
+                + "|" + last.getRatingCount() + "|" + score + "|" + last.getLowerName();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Cursor decodeCursor(ProductSort sort, String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 7);
+            if (parts.length != 7 || !parts[0].equals(sort.name())) {
+                throw new IllegalArgumentException("Cursor does not match the requested sort");
+            }
+            Entry entry = new Entry(Long.parseLong(parts[1]), parts[6], parts[6], Float.parseFloat(parts[2]),
+                    null, null, null, null, EnumSet.noneOf(SuitableType.class), null,
+                    Double.parseDouble(parts[3]), Long.parseLong(parts[4]));
+            return new Cursor(entry, Double.parseDouble(parts[5]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    // the last row of the previous page, as far as the sort orders are concerned
+    @AllArgsConstructor
+    private static class Cursor {
+        private final Entry entry;
+        private final double score;
+
+        // < 0 when the row sorts before the cursor, > 0 when after
+        int compareTo(ProductSort sort, Entry row, Map<Long, Double> scores) {
+            if (sort == ProductSort.RELEVANCE) {
+                int byScore = Double.compare(score, scores.getOrDefault(row.getId(), 0.0));
+                return byScore != 0 ? byScore : Long.compare(row.getId(), entry.getId());
+            }
+            return Snapshot.COMPARATORS.get(sort).compare(row, entry);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class CatalogPage {
+        private final List<ProductResponse> items;
+        private final String nextCursor;
+    }
+
+    // groups the (product x suitable type) rows of the listing projection
+    static final class ListingRows {
+        final Map<Long, Entry> entries = new LinkedHashMap<>();
+        final Map<Long, Integer> quantities = new HashMap<>();
+        final Set<Long> deleted = new HashSet<>();
+
+        ListingRows(List<Object[]> rows) {
+            Map<Long, Set<SuitableType>> types = new HashMap<>();
+            Map<Long, Object[]> first = new LinkedHashMap<>();
+            for (Object[] row : rows) {
+                long id = ((Number) row[0]).longValue();
+                first.putIfAbsent(id, row);
+                Set<SuitableType> productTypes = types.computeIfAbsent(id, k -> EnumSet.noneOf(SuitableType.class));
+                if (row[10] != null) {
+                    productTypes.add((SuitableType) row[10]);
+                }
+            }
+            for (Object[] row : first.values()) {
+                long id = ((Number) row[0]).longValue();
+                String name = row[1] == null ? "" : (String) row[1];
+                entries.put(id, new Entry(id, name, name.toLowerCase(Locale.ROOT), ((Number) row[2]).floatValue(),
+                        (String) row[4], (String) row[5],
+                        row[7] == null ? null : ((Number) row[7]).longValue(), (String) row[8],
+                        types.get(id), (RoutineStep) row[9], 0, 0));
+                quantities.put(id, ((Number) row[3]).intValue());
+                if (Boolean.TRUE.equals(row[6])) {
+                    deleted.add(id);
+                }
+            }
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Entry {
+        private final long id;
+        private final String name;
+        private final String lowerName;
+        private final float price;
+        private final String image;
+        private final String code;
+        private final Long categoryId;
+        private final String categoryName;
+        private final Set<SuitableType> suitableTypes;
+        private final RoutineStep routineStep;
+        private final double averageRating;
+        private final long ratingCount;
+
+        static Entry of(Product product, Entry previous) {
+            Set<SuitableType> types = EnumSet.noneOf(SuitableType.class);
+            if (product.getSuitableTypes() != null) {
+                types.addAll(product.getSuitableTypes());
+            }
+            String name = product.getName() == null ? "" : product.getName();
+            return new Entry(
+                    product.getId(),
+                    name,
+                    name.toLowerCase(Locale.ROOT),
+                    product.getPrice(),
+                    product.getImage(),
+                    product.getCode(),
+                    product.getCategory() == null ? null : product.getCategory().getId(),
+                    product.getCategory() == null ? null : product.getCategory().getName(),
+                    types,
+                    product.getRoutineStep(),
+                    previous == null ? 0 : previous.getAverageRating(),
+                    previous == null ? 0 : previous.getRatingCount());
+        }
+
+        Entry withCategoryName(String categoryName) {
+            return new Entry(id, name, lowerName, price, image, code, categoryId, categoryName,
+                    suitableTypes, routineStep, averageRating, ratingCount);
+        }
+
+        Entry withRating(double averageRating, long ratingCount) {
+            return new Entry(id, name, lowerName, price, image, code, categoryId, categoryName,
+                    suitableTypes, routineStep, averageRating, ratingCount);
+        }
+    }
+
+    // live product count, price range and skin type counts of one category
+    @Getter
+    public static class CategoryFacets {
+        private long productCount;
+        private Float minPrice;
+        private Float maxPrice;
+        private final Map<SuitableType, Long> suitableTypeCounts = new EnumMap<>(SuitableType.class);
+
+        private void add(Entry entry) {
+            productCount++;
+            minPrice = minPrice == null ? entry.getPrice() : Math.min(minPrice, entry.getPrice());
+            maxPrice = maxPrice == null ? entry.getPrice() : Math.max(maxPrice, entry.getPrice());
+            for (SuitableType type : entry.getSuitableTypes()) {
+                suitableTypeCounts.merge(type, 1L, Long::sum);
+            }
+        }
+    }
+
+    static final class Snapshot {
+        private static final BitSet EMPTY = new BitSet();
+
+        // every ordering is total: ties are broken by id so keyset cursors never skip rows
+        static final Map<ProductSort, Comparator<Entry>> COMPARATORS = new EnumMap<>(ProductSort.class);
+
+        static {
+            Comparator<Entry> byId = Comparator.comparingLong(Entry::getId);
+            COMPARATORS.put(ProductSort.NEWEST, byId.reversed());
+            COMPARATORS.put(ProductSort.PRICE_LOW, Comparator.comparingDouble((Entry e) -> e.getPrice()).thenComparing(byId));
+            COMPARATORS.put(ProductSort.PRICE_HIGH, Comparator.comparingDouble((Entry e) -> e.getPrice()).reversed().thenComparing(byId));
+            COMPARATORS.put(ProductSort.NAME, Comparator.comparing(Entry::getLowerName).thenComparing(byId));
+            COMPARATORS.put(ProductSort.RATING, Comparator.comparingDouble(Entry::getAverageRating)
+                    .thenComparingLong(Entry::getRatingCount).reversed().thenComparing(byId));
+        }
+
+        final Entry[] slots;
+        final Map<Long, Integer> slotById = new HashMap<>();
+        final BitSet all;
+        final Map<Long, BitSet> byCategory = new HashMap<>();
+        final Map<SuitableType, BitSet> bySuitableType = new EnumMap<>(SuitableType.class);
+        final Map<RoutineStep, BitSet> byRoutineStep = new EnumMap<>(RoutineStep.class);
+        final Map<ProductSort, int[]> orderings = new EnumMap<>(ProductSort.class);
+        final float[] sortedPrices;
+        final Map<Long, CategoryFacets> facetsByCategory = new HashMap<>();
+
+        Snapshot(Collection<Entry> source) {
+            slots = source.toArray(new Entry[0]);
+            Arrays.sort(slots, Comparator.comparingLong(Entry::getId));
+
+            all = new BitSet(slots.length);
+            all.set(0, slots.length);
+            for (int slot = 0; slot < slots.length; slot++) {
+                Entry entry = slots[slot];
+                slotById.put(entry.getId(), slot);
+                if (entry.getCategoryId() != null) {
+                    byCategory.computeIfAbsent(entry.getCategoryId(), k -> new BitSet()).set(slot);
+                    facetsByCategory.computeIfAbsent(entry.getCategoryId(), k -> new CategoryFacets()).add(entry);
+                }
+                for (SuitableType type : entry.getSuitableTypes()) {
+                    bySuitableType.computeIfAbsent(type, k -> new BitSet()).set(slot);
+                }
+                if (entry.getRoutineStep() != null) {
+                    byRoutineStep.computeIfAbsent(entry.getRoutineStep(), k -> new BitSet()).set(slot);
+                }
+            }
+
+            for (Map.Entry<ProductSort, Comparator<Entry>> sort : COMPARATORS.entrySet()) {
+                orderings.put(sort.getKey(), order(sort.getValue()));
+            }
+            int[] byPrice = orderings.get(ProductSort.PRICE_LOW);
+            sortedPrices = new float[slots.length];
+            for (int i = 0; i < byPrice.length; i++) {
+                sortedPrices[i] = slots[byPrice[i]].getPrice();
+            }
+        }
+
+        private int[] order(Comparator<Entry> comparator) {
+            Integer[] boxed = new Integer[slots.length];
+            for (int i = 0; i < boxed.length; i++) {
+                boxed[i] = i;
+            }
+            Arrays.sort(boxed, (a, b) -> comparator.compare(slots[a], slots[b]));
+            int[] ordering = new int[boxed.length];
+            for (int i = 0; i < boxed.length; i++) {
+                ordering[i] = boxed[i];
+            }
+            return ordering;
+        }
+
+        // relevance order is query specific, so it is computed per request from the hits
+        int[] ordering(ProductSort sort, Map<Long, Double> scores) {
+            if (sort != ProductSort.RELEVANCE) {
+                return orderings.get(sort);
+            }
+            List<Map.Entry<Long, Double>> hits = new ArrayList<>(scores.entrySet());
+            hits.sort(Map.Entry.<Long, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+            int[] ordering = new int[hits.size()];
+            int length = 0;
+            for (Map.Entry<Long, Double> hit : hits) {
+                Integer slot = slotById.get(hit.getKey());
+                if (slot != null) {
+                    ordering[length++] = slot;
+                }
+            }
+            return Arrays.copyOf(ordering, length);
+        }
+
+        BitSet match(ProductFilter filter, Map<Long, Double> scores) {
+            BitSet result = (BitSet) all.clone();
+            if (filter.getName() != null && !filter.getName().isBlank()) {
+                BitSet hits = new BitSet(slots.length);
+                for (Long productId : scores.keySet()) {
+                    Integer slot = slotById.get(productId);
+                    if (slot != null) {
+                        hits.set(slot);
+                    }
+                }
+                result.and(hits);
+            }
+            if (filter.getCategoryId() != null) {
+                result.and(byCategory.getOrDefault(filter.getCategoryId(), EMPTY));
+            }
+            if (filter.getSuitableTypes() != null && !filter.getSuitableTypes().isEmpty()) {
+                BitSet anyType = new BitSet(slots.length);
+                for (SuitableType type : filter.getSuitableTypes()) {
+                    anyType.or(bySuitableType.getOrDefault(type, EMPTY));
+                }
+                result.and(anyType);
+            }
+            if (filter.getRoutineStep() != null) {
+                result.and(byRoutineStep.getOrDefault(filter.getRoutineStep(), EMPTY));
+            }
+            if (filter.getMinPrice() != null || filter.getMaxPrice() != null) {
+                result.and(priceRange(filter.getMinPrice(), filter.getMaxPrice()));
+            }
+            return result;
+        }
+
+        // first position in the ordering that sorts strictly after the cursor row
+        static int positionAfter(Snapshot snapshot, int[] ordering, ToIntFunction<Entry> compareToCursor) {
+            int low = 0, high = ordering.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compareToCursor.applyAsInt(snapshot.slots[ordering[mid]]) <= 0) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+
+        // slots whose price lies in [min, max], found with two binary searches
+        BitSet priceRange(Double min, Double max) {
+            int[] byPrice = orderings.get(ProductSort.PRICE_LOW);
+            int from = min == null ? 0 : firstIndexAtLeast(min);
+            int to = max == null ? sortedPrices.length : firstIndexAbove(max);
+            BitSet range = new BitSet(slots.length);
+            for (int i = from; i < to; i++) {
+                range.set(byPrice[i]);
+            }
+            return range;
+        }
+
+        private int firstIndexAtLeast(double value) {
+            int low = 0, high = sortedPrices.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (sortedPrices[mid] < value) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+
+        private int firstIndexAbove(double value) {
+            int low = 0, high = sortedPrices.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (sortedPrices[mid] <= value) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Category;
+import com.example.demo.entity.response.ProductImportResponse;
+import com.example.demo.enums.RoutineStep;
+import com.example.demo.enums.SuitableType;
+import com.example.demo.repository.CategoryRepository;
+import com.example.demo.utils.CsvReader;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.Types;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Bulk product import and export.
+ *
+ * Imports stream the request body row by row, validate each row on its own and write
+ * the valid ones in JDBC batches keyed on the unique product code: a known code updates
+ * the product (and brings back a soft-deleted one), a new code inserts it. Exports
+ * stream straight from a MySQL streaming result set, so neither side ever holds the
+ * whole catalog in memory.
+ *
+ * Columns: code, name, price, quantity, image, categoryId, suitableTypes (separated by |), routineStep.
+ */
+@Service
+public class ProductImportService {
+
+    public static final String CSV = "text/csv";
+    public static final String NDJSON = "application/x-ndjson";
+
+    private static final Map<String, String> BLANK = Map.of();
+
+    private static final int BATCH_SIZE = 500;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final Pattern CODE = Pattern.compile("PD\\d{5}");
+    private static final List<String> COLUMNS = List.of(
+            "code", "name", "price", "quantity", "image", "categoryId", "suitableTypes", "routineStep");
+
+    private static final String UPSERT = "INSERT INTO product (code, name, price, quantity, image, category_id, routine_step, is_deleted) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, false) " +
+            "ON DUPLICATE KEY UPDATE name = VALUES(name), price = VALUES(price), quantity = VALUES(quantity), " +
+            "image = VALUES(image), category_id = VALUES(category_id), routine_step = VALUES(routine_step), is_deleted = false";
+
+    private static final String EXPORT = "SELECT p.code, p.name, p.price, p.quantity, p.image, p.category_id, " +
+            "GROUP_CONCAT(t.suitable_type ORDER BY t.suitable_type SEPARATOR '|') AS suitable_types, p.routine_step " +
+            "FROM product p LEFT JOIN product_suitable_types t ON t.product_id = p.id " +
+            "WHERE p.is_deleted = false GROUP BY p.id ORDER BY p.id";
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    CategoryRepository categoryRepository;
+
+    @Autowired
+    ProductCatalogIndex productCatalogIndex;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    HotStockService hotStockService;
+
+    // POST import products from a CSV (with header) or NDJSON body
+    public ProductImportResponse importProducts(InputStream body, String contentType) {
+        Set<Long> categoryIds = new HashSet<>();
+        for (Category category : categoryRepository.findCategoriesByIsDeletedFalse()) {
+            categoryIds.add(category.getId());
+        }
+
+        ProductImportResponse report = new ProductImportResponse();
+        List<ImportRow> batch = new ArrayList<>(BATCH_SIZE);
+        Reader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        RowSource rows;
+        try {
+            rows = NDJSON.equals(contentType) ? ndjsonRows((BufferedReader) reader) : csvRows(new CsvReader(reader));
+        } catch (IOException e) {
+            fail(report, 0, null, "Header row could not be read: " + e.getMessage());
+            return report;
+        }
+
+        while (true) {
+            Map<String, String> row;
+            try {
+                row = rows.next();
+            } catch (IOException e) {
+                // nothing past this point can be read (e.g. an unterminated quote); the rows before it still count
+                flush(batch, report);
+                fail(report, report.getRows() + 1, null, "Import stopped, the rest of the file could not be read: " + e.getMessage());
+                return report;
+            }
+            if (row == null) {
+                break;
+            }
+            if (row == BLANK) {
+                continue;
+            }
+            report.setRows(report.getRows() + 1);
+            try {
+                batch.add(ImportRow.parse(report.getRows(), row, categoryIds));
+            } catch (IllegalArgumentException e) {
+                fail(report, report.getRows(), row.get("code"), e.getMessage());
+                continue;
+            }
+            if (batch.size() == BATCH_SIZE) {
+                flush(batch, report);
+            }
+        }
+        flush(batch, report);
+        return report;
+    }
+
+    // GET stream all non-deleted products in the import format
+    public void exportProducts(OutputStream out, String contentType) throws IOException {
+        // a dedicated template: MIN_VALUE makes Connector/J stream rows instead of buffering the result
+        JdbcTemplate streaming = new JdbcTemplate(dataSource);
+        streaming.setFetchSize(Integer.MIN_VALUE);
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        boolean ndjson = NDJSON.equals(contentType);
+        JsonGenerator json = ndjson ? objectMapper.getFactory().createGenerator(writer) : null;
+        if (!ndjson) {
+            writer.write(String.join(",", COLUMNS));
+            writer.write("\r\n");
+        }
+        try {
+            streaming.query(EXPORT, resultSet -> {
+                try {
+                    String[] values = {
+                            resultSet.getString(1), resultSet.getString(2), resultSet.getString(3), resultSet.getString(4),
+                            resultSet.getString(5), resultSet.getString(6), resultSet.getString(7), resultSet.getString(8)};
+                    if (ndjson) {
+                        json.writeStartObject();
+                        json.writeStringField("code", values[0]);
+                        json.writeStringField("name", values[1]);
+                        json.writeNumberField("price", resultSet.getFloat(3));
+                        json.writeNumberField("quantity", resultSet.getInt(4));
+                        json.writeStringField("image", values[4]);
+                        json.writeNumberField("categoryId", resultSet.getLong(6));
+                        json.writeArrayFieldStart("suitableTypes");
+                        if (values[6] != null) {
+                            for (String type : values[6].split("\\|")) {
+                                json.writeString(type);
+                            }
+                        }
+                        json.writeEndArray();
+                        json.writeStringField("routineStep", values[7]);
+                        json.writeEndObject();
+                        json.writeRaw('\n');
+                    } else {
+                        for (int i = 0; i < values.length; i++) {
+                            if (i > 0) {
+                                writer.write(',');
+                            }
+                            writer.write(escape(values[i]));
+                        }
+                        writer.write("\r\n");
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (json != null) {
+            json.flush();
+        }
+        writer.flush();
+    }
+
+    // one transaction per batch: upsert products, then replace their suitable types
+    private void flush(List<ImportRow> batch, ProductImportResponse report) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        // the last row wins when a code repeats inside a batch
+        Map<String, ImportRow> byCode = new LinkedHashMap<>();
+        for (ImportRow row : batch) {
+            byCode.put(row.code, row);
+        }
+        List<ImportRow> rows = new ArrayList<>(byCode.values());
+
+        Map<String, Long> ids;
+        try {
+            ids = transactionTemplate.execute(status -> {
+                jdbcTemplate.batchUpdate(UPSERT, rows, rows.size(), (statement, row) -> {
+                    statement.setString(1, row.code);
+                    statement.setString(2, row.name);
+                    statement.setFloat(3, row.price);
+                    statement.setInt(4, row.quantity);
+                    statement.setString(5, row.image);
+                    statement.setLong(6, row.categoryId);
+                    if (row.routineStep == null) {
+                        statement.setNull(7, Types.VARCHAR);
+                    } else {
+                        statement.setString(7, row.routineStep.name());
+                    }
+                });
+
+                Map<String, Long> idsByCode = new HashMap<>();
+                namedParameterJdbcTemplate.query("SELECT id, code FROM product WHERE code IN (:codes)",
+                        new MapSqlParameterSource("codes", byCode.keySet()),
+                        resultSet -> {
+                            idsByCode.put(resultSet.getString(2), resultSet.getLong(1));
+                        });
+
+                namedParameterJdbcTemplate.update("DELETE FROM product_suitable_types WHERE product_id IN (:ids)",
+                        new MapSqlParameterSource("ids", idsByCode.values()));
+                List<Object[]> types = new ArrayList<>();
+                for (ImportRow row : rows) {
+                    for (SuitableType type : row.suitableTypes) {
+                        types.add(new Object[]{idsByCode.get(row.code), type.name()});
+                    }
+                }
+                if (!types.isEmpty()) {
+                    jdbcTemplate.batchUpdate("INSERT INTO product_suitable_types (product_id, suitable_type) VALUES (?, ?)", types);
+                }
+                return idsByCode;
+            });
+        } catch (DataAccessException e) {
+            // the whole batch was rolled back, e.g. a value longer than its column
+            String message = "Batch rejected by the database: " + e.getMostSpecificCause().getMessage();
+            for (ImportRow row : batch) {
+                fail(report, row.rowNumber, row.code, message);
+            }
+            batch.clear();
+            return;
+        }
+
+        productCatalogIndex.refresh(ids.values());
+        // the upsert overwrote quantity, hot products take their stock from it again
+        for (Long id : ids.values()) {
+            try {
+                hotStockService.reseed(id);
+            } catch (RuntimeException e) {
+                System.err.println("Could not reseed hot stock of product " + id + " after import: " + e.getMessage());
+            }
+        }
+        report.setImported(report.getImported() + rows.size());
+        batch.clear();
+    }
+
+    private static void fail(ProductImportResponse report, long row, String code, String message) {
+        report.setFailed(report.getFailed() + 1);
+        if (report.getErrors().size() < MAX_REPORTED_ERRORS) {
+            report.getErrors().add(new ProductImportResponse.RowError(row, code, message));
+        }
+    }
+
+    static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    private interface RowSource {
+        // column -> raw value, BLANK for an empty line, null at the end of the input
+        Map<String, String> next() throws IOException;
+    }
+
+    private static RowSource csvRows(CsvReader csv) throws IOException {
+        List<String> header = csv.next();
+        if (header == null) {
+            return () -> null;
+        }
+        List<String> columns = new ArrayList<>();
+        for (String column : header) {
+            columns.add(column.trim());
+        }
+        return () -> {
+            List<String> record = csv.next();
+            if (record == null) {
+                return null;
+            }
+            if (record.size() == 1 && record.get(0).isBlank()) {
+                return BLANK;
+            }
+            Map<String, String> row = new HashMap<>();
+            for (int i = 0; i < columns.size() && i < record.size(); i++) {
+                row.put(columns.get(i), record.get(i));
+            }
+            return row;
+        };
+    }
+
+    private RowSource ndjsonRows(BufferedReader reader) {
+        return () -> {
+            String line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            if (line.isBlank()) {
+                return BLANK;
+            }
+            Map<String, String> row = new HashMap<>();
+            JsonNode node;
+            try {
+                node = objectMapper.readTree(line);
+            } catch (IOException e) {
+                node = null;
+            }
+            if (node == null || !node.isObject()) {
+                row.put("error", "Line is not a JSON object");
+                return row;
+            }
+            node.fields().forEachRemaining(field -> {
+                JsonNode value = field.getValue();
+                if (value.isArray()) {
+                    List<String> items = new ArrayList<>();
+                    value.forEach(item -> items.add(item.asText()));
+                    row.put(field.getKey(), String.join("|", items));
+                } else if (!value.isNull()) {
+                    row.put(field.getKey(), value.asText());
+                }
+            });
+            return row;
+        };
+    }
+
+    // a validated row, ready to be written
+    private static final class ImportRow {
+        long rowNumber;
+        String code;
+        String name;
+        float price;
+        int quantity;
+        String image;
+        long categoryId;
+        Set<SuitableType> suitableTypes = EnumSet.noneOf(SuitableType.class);
+        RoutineStep routineStep;
+
+        static ImportRow parse(long rowNumber, Map<String, String> values, Set<Long> categoryIds) {
+            if (values.containsKey("error")) {
+                throw new IllegalArgumentException(values.get("error"));
+            }
+            ImportRow row = new ImportRow();
+            row.rowNumber = rowNumber;
+            row.code = trimmed(values.get("code"));
+            if (row.code == null || !CODE.matcher(row.code).matches()) {
+                throw new IllegalArgumentException("Code must be PDxxxxx!");
+            }
+            row.name = trimmed(values.get("name"));
+            if (row.name == null) {
+                throw new IllegalArgumentException("Name is required");
+            }
+            row.image = trimmed(values.get("image"));
+            if (row.image == null) {
+                throw new IllegalArgumentException("Image is required");
+            }
+            try {
+                row.price = Float.parseFloat(required(values, "price"));
+                row.quantity = Integer.parseInt(required(values, "quantity"));
+                row.categoryId = Long.parseLong(required(values, "categoryId"));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("price, quantity and categoryId must be numbers");
+            }
+            if (!(row.price >= 0) || Float.isInfinite(row.price)) {
+                throw new IllegalArgumentException("Price must not be negative");
+            }
+            if (row.quantity < 0) {
+                throw new IllegalArgumentException("Quantity must not be negative");
+            }
+            if (!categoryIds.contains(row.categoryId)) {
+                throw new IllegalArgumentException("Category " + row.categoryId + " not found");
+            }
+            String types = trimmed(values.get("suitableTypes"));
+            if (types != null) {
+                for (String type : types.split("\\|")) {
+                    if (!type.isBlank()) {
+                        row.suitableTypes.add(parseEnum(SuitableType.class, type, "suitable type"));
+                    }
+                }
+            }
+            String step = trimmed(values.get("routineStep"));
+            if (step != null) {
+                row.routineStep = parseEnum(RoutineStep.class, step, "routine step");
+            }
+            return row;
+        }
+
+        private static String required(Map<String, String> values, String column) {
+            String value = trimmed(values.get(column));
+            if (value == null) {
+                throw new IllegalArgumentException(column + " is required");
+            }
+            return value;
+        }
+
+        private static String trimmed(String value) {
+            return value == null || value.isBlank() ? null : value.trim();
+        }
+
+        private static <E extends Enum<E>> E parseEnum(Class<E> type, String value, String label) {
+            try {
+                return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown " + label + ": " + value.trim());
+            }
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.demo.service;
+
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Full-text index over product and category names.
+ *
+ * Text is folded to lowercase ASCII first ("Sữa rửa mặt" -> "sua rua mat"), so queries
+ * typed without accents still match. Terms are indexed by their trigrams: a query term
+ * pulls every vocabulary term sharing a trigram, which is then accepted as an exact,
+ * prefix or typo (small edit distance) match and weighted accordingly. A product
+ * matches when every query term matches one of its terms; name hits outrank category hits.
+ */
+@Component
+public class ProductSearchIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALNUM = Pattern.compile("[^a-z0-9]+");
+
+    private static final int NAME_FIELD = 1;
+    private static final int CATEGORY_FIELD = 2;
+
+    private static final double EXACT = 1.0;
+    private static final double PREFIX = 0.8;
+    private static final double TYPO = 0.6;
+    private static final double CATEGORY_WEIGHT = 0.5;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // trigram -> vocabulary terms containing it
+    private final Map<String, Set<String>> termsByGram = new HashMap<>();
+    // term -> (productId -> fields the term occurs in)
+    private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+    private final Map<Long, Document> documents = new HashMap<>();
+
+    public void index(long productId, String productName, Long categoryId, String categoryName) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(productId);
+            Document document = new Document(categoryId, tokenize(productName), tokenize(categoryName));
+            documents.put(productId, document);
+            addPostings(productId, document);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long productId) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // re-indexes the category terms of every product in a renamed category
+    public void renameCategory(long categoryId, String categoryName) {
+        List<String> categoryTerms = tokenize(categoryName);
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<Long, Document> entry : new ArrayList<>(documents.entrySet())) {
+                Document document = entry.getValue();
+                if (document.categoryId != null && document.categoryId == categoryId) {
+                    removeDocument(entry.getKey());
+                    Document renamed = new Document(categoryId, document.nameTerms, categoryTerms);
+                    documents.put(entry.getKey(), renamed);
+                    addPostings(entry.getKey(), renamed);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            termsByGram.clear();
+            postings.clear();
+            documents.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // productId -> relevance score, only for products matching every query term
+    public Map<Long, Double> search(String query) {
+        List<String> queryTerms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (queryTerms.isEmpty()) {
+            return Map.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Map<Long, Double> scores = null;
+            for (String queryTerm : queryTerms) {
+                Map<Long, Double> termScores = scoreTerm(queryTerm);
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    scores.keySet().retainAll(termScores.keySet());
+                    scores.replaceAll((productId, score) -> score + termScores.get(productId));
+                }
+                if (scores.isEmpty()) {
+                    break;
+                }
+            }
+            return scores;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // best weighted match of one query term per product
+    private Map<Long, Double> scoreTerm(String queryTerm) {
+        Map<Long, Double> best = new HashMap<>();
+        for (String term : candidateTerms(queryTerm)) {
+            double similarity = similarity(queryTerm, term);
+            if (similarity == 0) {
+                continue;
+            }
+            for (Map.Entry<Long, Integer> posting : postings.get(term).entrySet()) {
+                double weight = (posting.getValue() & NAME_FIELD) != 0 ? similarity : similarity * CATEGORY_WEIGHT;
+                best.merge(posting.getKey(), weight, Math::max);
+            }
+        }
+        return best;
+    }
+
+    private Set<String> candidateTerms(String queryTerm) {
+        Set<String> candidates = new HashSet<>();
+        for (String gram : grams(queryTerm)) {
+            Set<String> terms = termsByGram.get(gram);
+            if (terms != null) {
+                candidates.addAll(terms);
+            }
+        }
+        return candidates;
+    }
+
+    static double similarity(String queryTerm, String term) {
+        if (term.equals(queryTerm)) {
+            return EXACT;
+        }
+        if (queryTerm.length() >= 2 && term.startsWith(queryTerm)) {
+            return PREFIX;
+        }
+        // short words are too ambiguous to forgive typos in
+        if (queryTerm.length() < 4) {
+            return 0;
+        }
+        int allowed = queryTerm.length() >= 8 ? 2 : 1;
+        return editDistance(queryTerm, term, allowed) <= allowed ? TYPO : 0;
+    }
+
+    // Damerau-Levenshtein (optimal string alignment) distance, gives up once it exceeds the limit and then returns limit + 1
+    static int editDistance(String a, String b, int limit) {
+        if (Math.abs(a.length() - b.length()) > limit) {
+            return limit + 1;
+        }
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) d[i][0] = i;
+        for (int j = 0; j <= b.length(); j++) d[0][j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            int rowMin = Integer.MAX_VALUE;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+                }
+                rowMin = Math.min(rowMin, d[i][j]);
+            }
+            if (rowMin > limit) {
+                return limit + 1;
+            }
+        }
+        return Math.min(d[a.length()][b.length()], limit + 1);
+    }
+
+    private void addPostings(long productId, Document document) {
+        for (String term : document.nameTerms) {
+            addPosting(term, productId, NAME_FIELD);
+        }
+        for (String term : document.categoryTerms) {
+            addPosting(term, productId, CATEGORY_FIELD);
+        }
+    }
+
+    private void addPosting(String term, long productId, int field) {
+        Map<Long, Integer> termPostings = postings.get(term);
+        if (termPostings == null) {
+            termPostings = new HashMap<>();
+            postings.put(term, termPostings);
+            for (String gram : grams(term)) {
+                termsByGram.computeIfAbsent(gram, k -> new HashSet<>()).add(term);
+            }
+        }
+        termPostings.merge(productId, field, (a, b) -> a | b);
+    }
+
+    private void removeDocument(long productId) {
+        Document document = documents.remove(productId);
+        if (document == null) {
+            return;
+        }
+        List<String> terms = new ArrayList<>(document.nameTerms);
+        terms.addAll(document.categoryTerms);
+        for (String term : terms) {
+            Map<Long, Integer> termPostings = postings.get(term);
+            if (termPostings == null || termPostings.remove(productId) == null || !termPostings.isEmpty()) {
+                continue;
+            }
+            // last product using the term: drop it from the vocabulary
+            postings.remove(term);
+            for (String gram : grams(term)) {
+                Set<String> gramTerms = termsByGram.get(gram);
+                if (gramTerms != null) {
+                    gramTerms.remove(term);
+                    if (gramTerms.isEmpty()) {
+                        termsByGram.remove(gram);
+                    }
+                }
+            }
+        }
+    }
+
+    // "Sữa Rửa Mặt Đỏ" -> [sua, rua, mat, do]
+    public static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String folded = text.replace('đ', 'd').replace('Đ', 'd');
+        folded = MARKS.matcher(Normalizer.normalize(folded, Normalizer.Form.NFD)).replaceAll("");
+        folded = NON_ALNUM.matcher(folded.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+        return folded.isEmpty() ? List.of() : Arrays.asList(folded.split(" "));
+    }
+
+    // trigrams of the term padded with '$' so that word starts and ends carry weight
+    static List<String> grams(String term) {
+        String padded = "$" + term + "$";
+        if (padded.length() <= 3) {
+            return List.of(padded);
+        }
+        List<String> grams = new ArrayList<>(padded.length() - 2);
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    private static final class Document {
+        final Long categoryId;
+        final List<String> nameTerms;
+        final List<String> categoryTerms;
+
+        Document(Long categoryId, List<String> nameTerms, List<String> categoryTerms) {
+            this.categoryId = categoryId;
+            this.nameTerms = nameTerms;
+            this.categoryTerms = categoryTerms;
+        }
+    }
+}
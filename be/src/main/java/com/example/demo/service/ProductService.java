@@ -3,6 +3,13 @@ package com.example.demo.service;
 import com.example.demo.entity.Category;
 import com.example.demo.entity.Product;
 import com.example.demo.entity.request.ProductRequest;
+import com.example.demo.entity.response.ProductBatchResponse;
+import com.example.demo.entity.response.ProductPageResponse;
+import com.example.demo.entity.response.ProductResponse;
+import com.example.demo.enums.ProductSort;
+import com.example.demo.enums.RoutineStep;
+import com.example.demo.enums.SuitableType;
+import com.example.demo.model.ProductFilter;
 import com.example.demo.repository.CategoryRepository;
 import com.example.demo.repository.ProductRepository;
 import org.modelmapper.ModelMapper;
@@ -10,12 +17,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 
 @Service
 public class ProductService {
 
+    public static final int MAX_BATCH_SIZE = 500;
+
     @Autowired
     private ProductRepository productRepository;
 
@@ -25,28 +33,78 @@ public class ProductService {
     @Autowired
     private CategoryRepository categoryRepository;
 
+    @Autowired
+    private ProductCatalogIndex productCatalogIndex;
+
+    @Autowired
+    private HotStockService hotStockService;
+
     // GET all products (excluding deleted)
     public List<Product> getAllProducts() {
         return productRepository.findProductsByIsDeletedFalse();
     }
 
+    // GET products matching the filters, resolved and sorted by the in-memory catalog index
+    public List<ProductResponse> getAllProducts(Long categoryId, String name, Double minPrice, Double maxPrice,
+                                                List<SuitableType> suitableTypes, RoutineStep routineStep, String sort) {
+        ProductFilter filter = new ProductFilter(categoryId, name, minPrice, maxPrice, suitableTypes, routineStep);
+        return productCatalogIndex.search(filter, ProductSort.orDefault(sort, name));
+    }
+
+    // GET one keyset page of products matching the filters
+    public ProductPageResponse getProductPage(Long categoryId, String name, Double minPrice, Double maxPrice,
+                                              List<SuitableType> suitableTypes, RoutineStep routineStep,
+                                              String sort, String cursor, Integer size) {
+        ProductFilter filter = new ProductFilter(categoryId, name, minPrice, maxPrice, suitableTypes, routineStep);
+        int pageSize = size == null ? ProductCatalogIndex.DEFAULT_PAGE_SIZE
+                : Math.max(1, Math.min(size, ProductCatalogIndex.MAX_PAGE_SIZE));
+        ProductCatalogIndex.CatalogPage page = productCatalogIndex.page(filter, ProductSort.from(sort, name), cursor, pageSize);
+        return new ProductPageResponse(page.getItems(), page.getNextCursor());
+    }
+
     // GET product by ID
-    public ResponseEntity<Product> getById(Long id) {
-        Optional<Product> product = productRepository.findById(id);
-        return product.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+    public ResponseEntity<ProductResponse> getById(Long id) {
+        List<ProductResponse> found = productCatalogIndex.find(List.of(id));
+        return found.isEmpty() ? ResponseEntity.notFound().build() : ResponseEntity.ok(found.get(0));
+    }
+
+    // GET many products in request order; memory first, the rest with one IN query
+    public ProductBatchResponse getByIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new RuntimeException("At least one product id is required");
+        }
+        if (ids.size() > MAX_BATCH_SIZE) {
+            throw new RuntimeException("At most " + MAX_BATCH_SIZE + " products can be fetched at once");
+        }
+        Map<Long, ProductResponse> found = new HashMap<>();
+        for (ProductResponse product : productCatalogIndex.find(new ArrayList<>(new LinkedHashSet<>(ids)))) {
+            found.put(product.getId(), product);
+        }
+        List<ProductResponse> items = new ArrayList<>(ids.size());
+        Set<Long> missing = new LinkedHashSet<>();
+        for (Long id : ids) {
+            ProductResponse product = found.get(id);
+            items.add(product);
+            if (product == null) {
+                missing.add(id);
+            }
+        }
+        return new ProductBatchResponse(items, new ArrayList<>(missing));
     }
 
     // POST create a new product
-    public Product create(ProductRequest productRequest) {
+    public ProductResponse create(ProductRequest productRequest) {
         Product product = modelMapper.map(productRequest, Product.class);
         Category category = categoryRepository.findById(productRequest.getCategoryId())
                 .orElseThrow(() -> new RuntimeException("Category not found"));
         product.setCategory(category);
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        productCatalogIndex.upsert(saved);
+        return productCatalogIndex.get(saved.getId());
     }
 
     // PUT update an existing product
-    public ResponseEntity<Product> update(Long id, ProductRequest productRequest) {
+    public ResponseEntity<ProductResponse> update(Long id, ProductRequest productRequest) {
         Optional<Product> existingProduct = productRepository.findById(id);
         if (existingProduct.isPresent()) {
             Product product = existingProduct.get();
@@ -56,7 +114,9 @@ public class ProductService {
                     .orElseThrow(() -> new RuntimeException("Category not found"));
             product.setCategory(category);
             productRepository.save(product);
-            return ResponseEntity.ok(product);
+            productCatalogIndex.upsert(product);
+            hotStockService.reseed(id);
+            return getById(id);
         } else {
             return ResponseEntity.notFound().build();
         }
@@ -69,6 +129,7 @@ public class ProductService {
             Product p = product.get();
             p.setDeleted(true); // Assuming you have a `setDeleted()` method in your entity
             productRepository.save(p);
+            productCatalogIndex.remove(p.getId());
             return ResponseEntity.noContent().build();
         } else {
             return ResponseEntity.notFound().build();
@@ -2,15 +2,28 @@ package com.example.demo.service;
 
 import com.example.demo.entity.Account;
 import com.example.demo.entity.OrderDetail;
+import com.example.demo.entity.ProductRatingSummary;
 import com.example.demo.entity.Rating;
 import com.example.demo.entity.request.RatingRequest;
+import com.example.demo.entity.response.RatingSummaryResponse;
 import com.example.demo.enums.OrderStatus;
 import com.example.demo.exception.exceptions.NotFoundException;
 import com.example.demo.repository.OrderDetailRepository;
+import com.example.demo.repository.ProductRatingSummaryRepository;
+import com.example.demo.repository.ProductRepository;
 import com.example.demo.repository.RatingRepository;
 import com.example.demo.utils.AccountUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Service
 public class RatingService {
@@ -24,6 +37,28 @@ public class RatingService {
     @Autowired
     OrderDetailRepository orderDetailRepository;
 
+    @Autowired
+    ProductRatingSummaryRepository productRatingSummaryRepository;
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    ProductCatalogIndex productCatalogIndex;
+
+    // builds the summary table from the existing ratings the first time it is empty,
+    // before the catalog index reads it
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0)
+    @Transactional
+    public void backfillSummaries() {
+        if (productRatingSummaryRepository.count() == 0 && ratingRepository.count() > 0) {
+            int products = productRatingSummaryRepository.backfill();
+            System.out.println("Rating summaries backfilled for " + products + " products");
+        }
+    }
+
+    @Transactional
     public Rating createRating(RatingRequest ratingRequest) {
         OrderDetail orderDetail = orderDetailRepository.findById(ratingRequest.getOrderDetailId())
                 .orElseThrow(() -> new NotFoundException("OrderDetail not found"));
@@ -34,16 +69,18 @@ public class RatingService {
         if(!OrderStatus.PAID.equals(orderDetail.getOrder().getStatus())){
             throw new NotFoundException("Order chua dc thanh toan ma rating cai gi ????");
         }
+        if (ratingRequest.getRating() < 1 || ratingRequest.getRating() > 5) {
+            throw new RuntimeException("Rating must be between 1 and 5");
+        }
         Account account = accountUtils.getCurrentAccount();
+        long productId = orderDetail.getProduct().getId();
 
         // check xem user da rating product nay chua
         // neu roi thi bao loi
         // chua thi tao moi rating
-        orderDetail.getProduct().getRatings().stream().forEach(rating -> {
-            if (rating.getAccount().getId() == account.getId()){
-                throw new NotFoundException("may rating roi ma ???");
-            }
-        });
+        if (ratingRepository.existsByAccountIdAndProductId(account.getId(), productId)) {
+            throw new NotFoundException("may rating roi ma ???");
+        }
 
         Rating rating = new Rating();
         rating.setAccount(account);
@@ -52,6 +89,38 @@ public class RatingService {
         rating.setImage(ratingRequest.getImage());
         rating.setProduct(orderDetail.getProduct());
 
-        return ratingRepository.save(rating);
+        Rating saved = ratingRepository.save(rating);
+
+        // fold the new rating into the running totals; the catalog index takes them once they are committed,
+        // so a rollback never leaves it (or the ETag derived from it) showing a rating that does not exist;
+        // addRating locks the summary row, so the count read here orders the callbacks of concurrent ratings
+        productRatingSummaryRepository.addRating(productId, ratingRequest.getRating());
+        productRatingSummaryRepository.findById(productId).ifPresent(summary -> {
+            double average = summary.getAverage();
+            long ratingCount = summary.getRatingCount();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    productCatalogIndex.updateRating(productId, average, ratingCount);
+                }
+            });
+        });
+        return saved;
+    }
+
+    // GET average, count and star histogram of a product
+    public RatingSummaryResponse getSummary(long productId) {
+        if (!productRepository.existsById(productId)) {
+            throw new NotFoundException("Product not found");
+        }
+        ProductRatingSummary summary = productRatingSummaryRepository.findById(productId)
+                .orElseGet(() -> new ProductRatingSummary(productId, 0, 0, 0, 0, 0, 0, 0));
+        Map<Integer, Long> histogram = new LinkedHashMap<>();
+        histogram.put(1, summary.getStar1());
+        histogram.put(2, summary.getStar2());
+        histogram.put(3, summary.getStar3());
+        histogram.put(4, summary.getStar4());
+        histogram.put(5, summary.getStar5());
+        return new RatingSummaryResponse(productId, summary.getRatingCount(), summary.getAverage(), histogram);
     }
 }
@@ -0,0 +1,112 @@
+package com.example.demo.service;
+
+import com.example.demo.enums.RoutineStep;
+import com.example.demo.enums.SuitableType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Ranked candidates for the routine builder, one table per (suitable type, routine step).
+ *
+ * Products are ranked by a rating average pulled towards a neutral prior (so a single
+ * five-star review does not beat a hundred four-star ones) plus a bonus for units sold.
+ * {@link ProductCatalogIndex} pushes every product, rating and sales change here, and
+ * only the tables the product belongs to are touched. Each table keeps all of its
+ * candidates in rank order rather than just the first K, so dropping the leader
+ * promotes the runner-up without a rescan.
+ */
+@Component
+public class RoutineRanking {
+
+    private static final double PRIOR_MEAN = 3.0;
+    private static final double PRIOR_WEIGHT = 5.0;
+    private static final double SALES_WEIGHT = 0.25;
+
+    private static final Comparator<Candidate> BY_RANK = Comparator.comparingDouble(Candidate::getScore).reversed()
+            .thenComparingLong(Candidate::getProductId);
+
+    // guarded by "this"
+    private final Map<SuitableType, Map<RoutineStep, TreeSet<Candidate>>> tables = new EnumMap<>(SuitableType.class);
+    private final Map<Long, Candidate> candidates = new HashMap<>();
+
+    public synchronized void put(ProductCatalogIndex.Entry entry, long unitsSold) {
+        remove(entry.getId());
+        if (entry.getRoutineStep() == null || entry.getSuitableTypes().isEmpty()) {
+            return;
+        }
+        Candidate candidate = new Candidate(entry.getId(), entry.getCategoryId(), entry.getPrice(),
+                EnumSet.copyOf(entry.getSuitableTypes()), entry.getRoutineStep(),
+                score(entry.getAverageRating(), entry.getRatingCount(), unitsSold));
+        candidates.put(candidate.getProductId(), candidate);
+        for (SuitableType type : candidate.getSuitableTypes()) {
+            tables.computeIfAbsent(type, k -> new EnumMap<>(RoutineStep.class))
+                    .computeIfAbsent(candidate.getRoutineStep(), k -> new TreeSet<>(BY_RANK))
+                    .add(candidate);
+        }
+    }
+
+    public synchronized void remove(long productId) {
+        Candidate candidate = candidates.remove(productId);
+        if (candidate == null) {
+            return;
+        }
+        for (SuitableType type : candidate.getSuitableTypes()) {
+            Set<Candidate> table = tables.get(type).get(candidate.getRoutineStep());
+            table.remove(candidate);
+        }
+    }
+
+    public synchronized void clear() {
+        tables.clear();
+        candidates.clear();
+    }
+
+    // the highest ranked candidate accepted by the predicate, or null
+    public synchronized Candidate best(SuitableType type, RoutineStep step, Predicate<Candidate> accept) {
+        for (Candidate candidate : table(type, step)) {
+            if (accept.test(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    // the lowest price among candidates accepted by the predicate, or null
+    public synchronized Float cheapest(SuitableType type, RoutineStep step, Predicate<Candidate> accept) {
+        Float cheapest = null;
+        for (Candidate candidate : table(type, step)) {
+            if (accept.test(candidate) && (cheapest == null || candidate.getPrice() < cheapest)) {
+                cheapest = candidate.getPrice();
+            }
+        }
+        return cheapest;
+    }
+
+    private Set<Candidate> table(SuitableType type, RoutineStep step) {
+        Map<RoutineStep, TreeSet<Candidate>> steps = tables.get(type);
+        if (steps == null || !steps.containsKey(step)) {
+            return Set.of();
+        }
+        return steps.get(step);
+    }
+
+    static double score(double averageRating, long ratingCount, long unitsSold) {
+        double rating = (PRIOR_MEAN * PRIOR_WEIGHT + averageRating * ratingCount) / (PRIOR_WEIGHT + ratingCount);
+        return rating + SALES_WEIGHT * Math.log1p(unitsSold);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Candidate {
+        private final long productId;
+        private final Long categoryId;
+        private final float price;
+        private final Set<SuitableType> suitableTypes;
+        private final RoutineStep routineStep;
+        private final double score;
+    }
+}
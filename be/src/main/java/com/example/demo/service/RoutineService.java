@@ -0,0 +1,68 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.response.ProductResponse;
+import com.example.demo.entity.response.RoutineResponse;
+import com.example.demo.enums.RoutineStep;
+import com.example.demo.enums.SuitableType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+@Service
+public class RoutineService {
+
+    // the order a routine is applied in
+    private static final List<RoutineStep> STEPS = List.of(
+            RoutineStep.CLEANSER, RoutineStep.TONER, RoutineStep.SERUM, RoutineStep.MOISTURIZER, RoutineStep.SUNSCREEN);
+
+    @Autowired
+    RoutineRanking routineRanking;
+
+    @Autowired
+    ProductCatalogIndex productCatalogIndex;
+
+    // GET one best product per step for the skin type. With a budget, each step takes the best
+    // product that still leaves enough for the cheapest option of every later step.
+    public RoutineResponse build(SuitableType suitableType, Double budget, Long categoryId) {
+        if (budget != null && budget < 0) {
+            throw new IllegalArgumentException("Budget must not be negative");
+        }
+        Predicate<RoutineRanking.Candidate> available = candidate ->
+                (categoryId == null || categoryId.equals(candidate.getCategoryId()))
+                        && productCatalogIndex.inStock(candidate.getProductId());
+
+        Float[] cheapest = new Float[STEPS.size()];
+        if (budget != null) {
+            for (int i = 0; i < STEPS.size(); i++) {
+                cheapest[i] = routineRanking.cheapest(suitableType, STEPS.get(i), available);
+            }
+        }
+
+        double remaining = budget == null ? 0 : budget;
+        float total = 0;
+        List<RoutineResponse.Step> steps = new ArrayList<>(STEPS.size());
+        for (int i = 0; i < STEPS.size(); i++) {
+            Predicate<RoutineRanking.Candidate> accept = available;
+            if (budget != null) {
+                double reserved = 0;
+                for (int later = i + 1; later < STEPS.size(); later++) {
+                    reserved += cheapest[later] == null ? 0 : cheapest[later];
+                }
+                double allowance = remaining - reserved;
+                accept = available.and(candidate -> candidate.getPrice() <= allowance);
+            }
+
+            RoutineRanking.Candidate best = routineRanking.best(suitableType, STEPS.get(i), accept);
+            ProductResponse product = best == null ? null : productCatalogIndex.get(best.getProductId());
+            if (product != null) {
+                remaining -= product.getPrice();
+                total += product.getPrice();
+            }
+            steps.add(new RoutineResponse.Step(STEPS.get(i), product));
+        }
+        return new RoutineResponse(suitableType, budget, total, steps);
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Order;
+import com.example.demo.utils.HmacSigner;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * VNPay (MB Bank transfer) payment URLs.
+ *
+ * VNPay signs the query string with its parameters sorted by name. Most of them never
+ * change, so the sorted layout is worked out once at startup: constant parameters are
+ * kept as ready-encoded "name=value" pairs and only the per-order ones are encoded on
+ * each request. Field names are plain ASCII, so the signed data and the query are the
+ * same string. Returns are checked the same way: every non-empty vnp_ parameter but the
+ * hash itself, sorted and encoded, signed with the same key.
+ */
+@Service
+public class VnPayPaymentService implements PaymentGateway {
+
+    public static final String METHOD = "VNPAY";
+
+    private static final DateTimeFormatter CREATE_DATE = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    // per-order parameters, filled in by createPaymentUrl
+    private static final String AMOUNT = "vnp_Amount";
+    private static final String CREATE_DATE_PARAM = "vnp_CreateDate";
+    private static final String ORDER_INFO = "vnp_OrderInfo";
+    private static final String RETURN_URL = "vnp_ReturnUrl";
+    private static final String TXN_REF = "vnp_TxnRef";
+
+    private static final String SECURE_HASH = "vnp_SecureHash";
+    private static final String SECURE_HASH_TYPE = "vnp_SecureHashType";
+
+    @Value("${vnpay.tmn-code}")
+    private String tmnCode;
+
+    @Value("${vnpay.secret-key}")
+    private String secretKey;
+
+    @Value("${vnpay.pay-url}")
+    private String payUrl;
+
+    @Value("${vnpay.return-url}")
+    private String returnUrl;
+
+    private HmacSigner signer;
+
+    // sorted parameter names, and the encoded "name=value" of each constant one (null for per-order ones)
+    private String[] names;
+    private String[] constantPairs;
+
+    @PostConstruct
+    void init() {
+        signer = new HmacSigner("HmacSHA512", secretKey);
+
+        Map<String, String> params = new TreeMap<>();
+        params.put("vnp_Version", "2.1.0");
+        params.put("vnp_Command", "pay");
+        params.put("vnp_TmnCode", tmnCode);
+        // force the bank transfer/ATM form, with MB Bank selected
+        params.put("vnp_BankCode", "MBBANK");
+        params.put("vnp_CardType", "ATM");
+        params.put("vnp_Payment_Type", "ATM");
+        params.put("vnp_CurrCode", "VND");
+        params.put("vnp_IpAddr", "127.0.0.1");
+        params.put("vnp_Locale", "vn");
+        params.put("vnp_OrderType", "other");
+        params.put("vnp_Merchant", "SkinCare Shop K18");
+        params.put(AMOUNT, null);
+        params.put(CREATE_DATE_PARAM, null);
+        params.put(ORDER_INFO, null);
+        params.put(RETURN_URL, null);
+        params.put(TXN_REF, null);
+
+        names = params.keySet().toArray(new String[0]);
+        constantPairs = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            String value = params.get(names[i]);
+            if (value != null) {
+                constantPairs[i] = names[i] + "=" + encode(value);
+            }
+        }
+    }
+
+    @Override
+    public String method() {
+        return METHOD;
+    }
+
+    @Override
+    public String createPaymentUrl(Order order) {
+        String orderId = String.valueOf(order.getId());
+        StringBuilder query = new StringBuilder(512);
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) {
+                query.append('&');
+            }
+            if (constantPairs[i] != null) {
+                query.append(constantPairs[i]);
+                continue;
+            }
+            query.append(names[i]).append('=');
+            switch (names[i]) {
+                case AMOUNT -> query.append(Math.round(order.getTotal() * 100));
+                case CREATE_DATE_PARAM -> query.append(LocalDateTime.now().format(CREATE_DATE));
+                case ORDER_INFO -> query.append(encode("Payment for order #" + orderId));
+                case RETURN_URL -> query.append(encode(returnUrl + "?orderId=" + orderId));
+                case TXN_REF -> query.append(orderId);
+                default -> throw new IllegalStateException("No value for " + names[i]);
+            }
+        }
+
+        String secureHash = signer.sign(query.toString());
+        return payUrl + "?" + query + "&" + SECURE_HASH + "=" + secureHash;
+    }
+
+    // true when vnp_SecureHash signs exactly the vnp_ parameters VNPay sent back
+    public boolean verifySecureHash(Map<String, String> params) {
+        String secureHash = params.get(SECURE_HASH);
+        if (secureHash == null) {
+            return false;
+        }
+        StringBuilder data = new StringBuilder(512);
+        for (Map.Entry<String, String> param : new TreeMap<>(params).entrySet()) {
+            String name = param.getKey();
+            String value = param.getValue();
+            if (!name.startsWith("vnp_") || name.equals(SECURE_HASH) || name.equals(SECURE_HASH_TYPE)
+                    || value == null || value.isEmpty()) {
+                continue;
+            }
+            if (data.length() > 0) {
+                data.append('&');
+            }
+            data.append(name).append('=').append(encode(value));
+        }
+        return signer.verify(data.toString(), secureHash);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.US_ASCII);
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.demo.utils;
 
 import com.example.demo.entity.Account;
+import com.example.demo.enums.RoleEnum;
 import com.example.demo.repository.AuthenticationRepository;
 import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
@@ -24,4 +25,20 @@ public class AccountUtils implements ApplicationContextAware {
         return userRepo.findByUsername(username).orElseThrow();
     }
 
+    // the JWT filter already put the account in the security context, no need to look it up again
+    public long getCurrentAccountId() {
+        Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        if (principal instanceof Account account) {
+            return account.getId();
+        }
+        return getCurrentAccount().getId();
+    }
+
+    // managers and staff may see every customer's orders and payments
+    public boolean isStaff() {
+        Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        Account account = principal instanceof Account current ? current : getCurrentAccount();
+        return account.getRoleEnum() == RoleEnum.MANAGER || account.getRoleEnum() == RoleEnum.STAFF;
+    }
+
 }
@@ -0,0 +1,98 @@
+package com.example.demo.utils;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Collects a response body into a byte[], failing as soon as it grows past a limit
+ * instead of buffering whatever the server sends. A Content-Length over the limit is
+ * rejected before any byte is read.
+ */
+public final class BoundedBodyHandler implements HttpResponse.BodyHandler<byte[]> {
+
+    private final int maxBytes;
+
+    public BoundedBodyHandler(int maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<byte[]> apply(HttpResponse.ResponseInfo responseInfo) {
+        long declared = responseInfo.headers().firstValueAsLong("Content-Length").orElse(-1);
+        return new Subscriber(maxBytes, declared > maxBytes);
+    }
+
+    private static final class Subscriber implements HttpResponse.BodySubscriber<byte[]> {
+
+        private final int maxBytes;
+        private final boolean declaredTooLarge;
+        private final CompletableFuture<byte[]> body = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+        private byte[] buffer = new byte[1024];
+        private int size;
+
+        Subscriber(int maxBytes, boolean declaredTooLarge) {
+            this.maxBytes = maxBytes;
+            this.declaredTooLarge = declaredTooLarge;
+        }
+
+        @Override
+        public CompletionStage<byte[]> getBody() {
+            return body;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (declaredTooLarge) {
+                subscription.cancel();
+                body.completeExceptionally(new IOException("Response body exceeds " + maxBytes + " bytes"));
+                return;
+            }
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if (body.isDone()) {
+                return;
+            }
+            for (ByteBuffer item : items) {
+                int length = item.remaining();
+                if (size + length > maxBytes) {
+                    subscription.cancel();
+                    body.completeExceptionally(new IOException("Response body exceeds " + maxBytes + " bytes"));
+                    return;
+                }
+                if (size + length > buffer.length) {
+                    byte[] grown = new byte[Math.min(maxBytes, Math.max(buffer.length * 2, size + length))];
+                    System.arraycopy(buffer, 0, grown, 0, size);
+                    buffer = grown;
+                }
+                item.get(buffer, size, length);
+                size += length;
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            // no-op when the limit already failed the body
+            body.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (body.isDone()) {
+                return;
+            }
+            byte[] result = new byte[size];
+            System.arraycopy(buffer, 0, result, 0, size);
+            body.complete(result);
+        }
+    }
+}
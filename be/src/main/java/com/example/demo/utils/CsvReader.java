@@ -0,0 +1,86 @@
+package com.example.demo.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// RFC 4180 reader: quoted fields may hold commas, doubled quotes and line breaks
+public class CsvReader {
+
+    private final Reader reader;
+    private int peeked = -2;
+    private long physicalLines = 0;
+    private long line = 0;
+
+    public CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    // physical line the last record started on, 1-based
+    public long getLine() {
+        return line;
+    }
+
+    // the next record, or null at the end of the input
+    public List<String> next() throws IOException {
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+        line = ++physicalLines;
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted field starting on line " + line);
+                }
+                if (c == '"') {
+                    if (peek() == '"') {
+                        read();
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                if (c == '\r' && peek() == '\n') {
+                    read();
+                }
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+            if (quoted && c == '\n') {
+                physicalLines++;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (peeked != -2) {
+            int c = peeked;
+            peeked = -2;
+            return c;
+        }
+        return reader.read();
+    }
+
+    private int peek() throws IOException {
+        if (peeked == -2) {
+            peeked = reader.read();
+        }
+        return peeked;
+    }
+}
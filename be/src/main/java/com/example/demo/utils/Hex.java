@@ -0,0 +1,20 @@
+package com.example.demo.utils;
+
+// lowercase hex through a lookup table: one char[] per call instead of a String.format per byte
+public final class Hex {
+
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    private Hex() {
+    }
+
+    public static String encode(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0, j = 0; i < bytes.length; i++) {
+            int b = bytes[i] & 0xff;
+            out[j++] = DIGITS[b >>> 4];
+            out[j++] = DIGITS[b & 0x0f];
+        }
+        return new String(out);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.demo.utils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Locale;
+
+/**
+ * HMAC signer for one algorithm and key.
+ *
+ * The key is set up once on a prototype Mac; every thread gets its own clone of it, so
+ * signing skips the provider lookup and key schedule and never shares a Mac across threads.
+ * doFinal resets the Mac, leaving it ready for the next call on the same thread.
+ */
+public final class HmacSigner {
+
+    private final SecretKeySpec key;
+    private final Mac prototype;
+    private final ThreadLocal<Mac> macs;
+
+    public HmacSigner(String algorithm, String key) {
+        this.key = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), algorithm);
+        prototype = newMac();
+        macs = ThreadLocal.withInitial(this::copy);
+    }
+
+    // lowercase hex HMAC of the UTF-8 bytes of data
+    public String sign(String data) {
+        return Hex.encode(macs.get().doFinal(data.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // constant-time comparison against a hex signature received from outside
+    public boolean verify(String data, String signature) {
+        if (signature == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(sign(data).getBytes(StandardCharsets.US_ASCII),
+                signature.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private Mac copy() {
+        try {
+            return (Mac) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            // providers without clone support still pay the key setup only once per thread
+            return newMac();
+        }
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(key.getAlgorithm());
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialize " + key.getAlgorithm(), e);
+        }
+    }
+}
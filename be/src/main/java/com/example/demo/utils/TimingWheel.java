@@ -0,0 +1,117 @@
+package com.example.demo.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel (Varghese and Lauck): four wheels of 64 slots, each slot of
+ * a wheel spanning a full turn of the wheel below it. Scheduling and expiring cost O(1)
+ * no matter how many timers are pending, and a timer is moved down at most three
+ * times before it fires. With one-second ticks the wheels cover about 194 days; later
+ * deadlines are parked in the last slot and re-filed each time it comes around.
+ *
+ * Not thread-safe on its own; callers synchronize.
+ */
+public class TimingWheel<T> {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELTA = (1L << (BITS * LEVELS)) - 1;
+
+    private final long tickMillis;
+    private final List<List<Timer<T>>> slots = new ArrayList<>();
+    private long currentTick;
+    private int size;
+
+    public TimingWheel(long tickMillis, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.currentTick = nowMillis / tickMillis;
+        for (int i = 0; i < LEVELS * SLOTS; i++) {
+            slots.add(new ArrayList<>());
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // false when the deadline is already due; the caller should then handle the item itself
+    public boolean schedule(T item, long deadlineMillis) {
+        long tick = (deadlineMillis + tickMillis - 1) / tickMillis;
+        if (tick <= currentTick) {
+            return false;
+        }
+        place(new Timer<>(item, tick));
+        size++;
+        return true;
+    }
+
+    // moves the wheels up to now and returns every item whose deadline has passed
+    public List<T> advance(long nowMillis) {
+        List<T> expired = new ArrayList<>();
+        long target = nowMillis / tickMillis;
+        while (currentTick < target) {
+            currentTick++;
+            // higher wheels first, so that their timers can still drop into a lower slot that is due now
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (BITS * level)) - 1)) == 0) {
+                    cascade(level, (int) ((currentTick >>> (BITS * level)) & MASK));
+                }
+            }
+            List<Timer<T>> due = slot(0, (int) (currentTick & MASK));
+            if (due.isEmpty()) {
+                continue;
+            }
+            List<Timer<T>> timers = new ArrayList<>(due);
+            due.clear();
+            for (Timer<T> timer : timers) {
+                if (timer.tick <= currentTick) {
+                    expired.add(timer.item);
+                    size--;
+                } else {
+                    place(timer);
+                }
+            }
+        }
+        return expired;
+    }
+
+    private void cascade(int level, int index) {
+        List<Timer<T>> bucket = slot(level, index);
+        if (bucket.isEmpty()) {
+            return;
+        }
+        List<Timer<T>> timers = new ArrayList<>(bucket);
+        bucket.clear();
+        for (Timer<T> timer : timers) {
+            place(timer);
+        }
+    }
+
+    private void place(Timer<T> timer) {
+        long delta = Math.min(timer.tick - currentTick, MAX_DELTA);
+        long tick = currentTick + delta;
+        for (int level = 0; level < LEVELS; level++) {
+            if (delta < (1L << (BITS * (level + 1)))) {
+                slot(level, (int) ((tick >>> (BITS * level)) & MASK)).add(timer);
+                return;
+            }
+        }
+    }
+
+    private List<Timer<T>> slot(int level, int index) {
+        return slots.get(level * SLOTS + index);
+    }
+
+    private static final class Timer<T> {
+        final T item;
+        final long tick;
+
+        Timer(T item, long tick) {
+            this.item = item;
+            this.tick = tick;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.entity.Order;
+import com.example.demo.service.VnPayPaymentService;
+import com.example.demo.utils.HmacSigner;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of building signed payment requests, before and after the gateways
+ * kept their Macs per thread and precomputed the constant parts.
+ *
+ * Run with allocation figures:
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ *   java -cp "target/test-classes:target/classes:$(cat target/cp.txt)" \
+ *       com.example.demo.benchmark.PaymentSigningBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaymentSigningBenchmark {
+
+    private static final String MOMO_SECRET = "K951B6PE1waDMi640xX08PD3vg6EkVlz";
+    private static final String VNPAY_SECRET = "6E93KTQ6EHNWFUIIIGJW3S9URPTN4MOU";
+
+    private static final String MOMO_RAW_SIGNATURE = "accessKey=F8BBA842ECF85&amount=459000&extraData="
+            + "&ipnUrl=http://localhost:8080/api/payment/notify&orderId=ORDER_1234_1718000000000"
+            + "&orderInfo=Payment for order #1234&partnerCode=MOMO&redirectUrl=http://localhost:5173/payment/result"
+            + "&requestId=ORDER_1234_1718000000000&requestType=payWithMethod";
+
+    private Order order;
+    private VnPayPaymentService vnPay;
+    private HmacSigner momoSigner;
+
+    @Setup
+    public void setUp() {
+        order = new Order();
+        order.setId(1234);
+        order.setTotal(459000);
+
+        vnPay = new VnPayPaymentService();
+        ReflectionTestUtils.setField(vnPay, "tmnCode", "K2035S4C");
+        ReflectionTestUtils.setField(vnPay, "secretKey", VNPAY_SECRET);
+        ReflectionTestUtils.setField(vnPay, "payUrl", "https://sandbox.vnpayment.vn/paymentv2/vpcpay.html");
+        ReflectionTestUtils.setField(vnPay, "returnUrl", "http://localhost:5173/payment-result");
+        ReflectionTestUtils.invokeMethod(vnPay, "init");
+
+        momoSigner = new HmacSigner("HmacSHA256", MOMO_SECRET);
+    }
+
+    @Benchmark
+    public String vnPayUrl() {
+        return vnPay.createPaymentUrl(order);
+    }
+
+    @Benchmark
+    public String vnPayUrlLegacy() throws Exception {
+        return legacyVnPayUrl(order);
+    }
+
+    @Benchmark
+    public String momoSignature() {
+        return momoSigner.sign(MOMO_RAW_SIGNATURE);
+    }
+
+    @Benchmark
+    public String momoSignatureLegacy() throws Exception {
+        Mac hmacSha256 = Mac.getInstance("HmacSHA256");
+        hmacSha256.init(new SecretKeySpec(MOMO_SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return legacyHex(hmacSha256.doFinal(MOMO_RAW_SIGNATURE.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // the URL building OrderService.createURLPayment did before the gateways were split out
+    private static String legacyVnPayUrl(Order order) throws Exception {
+        Map<String, String> params = new HashMap<>();
+        params.put("vnp_Version", "2.1.0");
+        params.put("vnp_Command", "pay");
+        params.put("vnp_TmnCode", "K2035S4C");
+        params.put("vnp_Amount", String.valueOf(Math.round(order.getTotal() * 100)));
+        params.put("vnp_BankCode", "MBBANK");
+        params.put("vnp_CardType", "ATM");
+        params.put("vnp_Payment_Type", "ATM");
+        params.put("vnp_CreateDate", LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss")));
+        params.put("vnp_CurrCode", "VND");
+        params.put("vnp_IpAddr", "127.0.0.1");
+        params.put("vnp_Locale", "vn");
+        params.put("vnp_OrderInfo", "Payment for order #" + order.getId());
+        params.put("vnp_OrderType", "other");
+        params.put("vnp_ReturnUrl", "http://localhost:5173/payment-result?orderId=" + order.getId());
+        params.put("vnp_TxnRef", String.valueOf(order.getId()));
+        params.put("vnp_Merchant", "SkinCare Shop K18");
+
+        List<String> fieldNames = new ArrayList<>(params.keySet());
+        Collections.sort(fieldNames);
+        StringBuilder hashData = new StringBuilder();
+        StringBuilder query = new StringBuilder();
+        Iterator<String> itr = fieldNames.iterator();
+        while (itr.hasNext()) {
+            String fieldName = itr.next();
+            String fieldValue = params.get(fieldName);
+            hashData.append(fieldName).append('=').append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII.toString()));
+            query.append(URLEncoder.encode(fieldName, StandardCharsets.US_ASCII.toString())).append('=')
+                    .append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII.toString()));
+            if (itr.hasNext()) {
+                query.append('&');
+                hashData.append('&');
+            }
+        }
+
+        Mac sha512Hmac = Mac.getInstance("HmacSHA512");
+        sha512Hmac.init(new SecretKeySpec(VNPAY_SECRET.getBytes(), "HmacSHA512"));
+        String secureHash = legacyHex(sha512Hmac.doFinal(hashData.toString().getBytes()));
+        return "https://sandbox.vnpayment.vn/paymentv2/vpcpay.html?" + query + "&vnp_SecureHash=" + secureHash;
+    }
+
+    private static String legacyHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        org.openjdk.jmh.Main.main(args);
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Order;
+import com.example.demo.utils.HmacSigner;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// runs the MoMo client against a local stub of the create endpoint
+class MomoPaymentServiceTest {
+
+    private static final String PARTNER_CODE = "MOMO";
+    private static final String ACCESS_KEY = "TESTACCESSKEY";
+    private static final String SECRET_KEY = "TESTSECRETKEY";
+    private static final String REDIRECT_URL = "http://localhost:5173/payment/result";
+    private static final String IPN_URL = "http://localhost:8080/api/payment/notify";
+    private static final int MAX_RESPONSE_BYTES = 4096;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private HttpServer server;
+    private MomoPaymentService momo;
+
+    // what the stub does with the next create call
+    private volatile StubHandler handler;
+    private volatile byte[] lastRequest;
+
+    interface StubHandler {
+        void handle(HttpExchange exchange) throws Exception;
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/v2/gateway/api/create", exchange -> {
+            try {
+                lastRequest = exchange.getRequestBody().readAllBytes();
+                handler.handle(exchange);
+            } catch (Exception e) {
+                // the client gave up (timeout, oversized body); nothing left to answer
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+
+        momo = new MomoPaymentService();
+        ReflectionTestUtils.setField(momo, "partnerCode", PARTNER_CODE);
+        ReflectionTestUtils.setField(momo, "accessKey", ACCESS_KEY);
+        ReflectionTestUtils.setField(momo, "secretKey", SECRET_KEY);
+        ReflectionTestUtils.setField(momo, "apiEndpoint",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/v2/gateway/api/create");
+        ReflectionTestUtils.setField(momo, "redirectUrl", REDIRECT_URL);
+        ReflectionTestUtils.setField(momo, "ipnUrl", IPN_URL);
+        ReflectionTestUtils.setField(momo, "gatewayTimeoutMillis", 500L);
+        ReflectionTestUtils.setField(momo, "maxResponseBytes", MAX_RESPONSE_BYTES);
+        ReflectionTestUtils.setField(momo, "maxInFlight", 1);
+        ReflectionTestUtils.setField(momo, "objectMapper", objectMapper);
+        ReflectionTestUtils.invokeMethod(momo, "init");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private static Order order(long id, float total) {
+        Order order = new Order();
+        order.setId(id);
+        order.setTotal(total);
+        return order;
+    }
+
+    private static void respond(HttpExchange exchange, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Throwable failure(CompletableFuture<String> payUrl) {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> payUrl.get(5, TimeUnit.SECONDS));
+        return e.getCause();
+    }
+
+    @Test
+    void returnsPayUrlAndSignsTheRequest() throws Exception {
+        handler = exchange -> respond(exchange, "{\"partnerCode\":\"MOMO\",\"resultCode\":0,\"message\":\"Thành công.\","
+                + "\"extra\":{\"nested\":[1,2,3]},\"payUrl\":\"https://test-payment.momo.vn/pay/abc\"}");
+
+        assertEquals("https://test-payment.momo.vn/pay/abc",
+                momo.createPaymentRequest(order(42, 150000), "Payment for order #42").get(5, TimeUnit.SECONDS));
+
+        JsonNode request = objectMapper.readTree(lastRequest);
+        assertEquals(150000, request.get("amount").asLong());
+        String orderId = request.get("orderId").asText();
+        assertEquals(42, MomoPaymentService.orderIdOf(orderId));
+        String rawSignature = "accessKey=" + ACCESS_KEY + "&amount=150000&extraData=&ipnUrl=" + IPN_URL
+                + "&orderId=" + orderId + "&orderInfo=Payment for order #42&partnerCode=" + PARTNER_CODE
+                + "&redirectUrl=" + REDIRECT_URL + "&requestId=" + request.get("requestId").asText()
+                + "&requestType=payWithMethod";
+        assertEquals(new HmacSigner("HmacSHA256", SECRET_KEY).sign(rawSignature), request.get("signature").asText());
+    }
+
+    @Test
+    void reportsNonZeroResultCodeWithMomosMessage() {
+        handler = exchange -> respond(exchange, "{\"resultCode\":1001,\"message\":\"Insufficient balance\"}");
+
+        Throwable error = failure(momo.createPaymentRequest(order(7, 50000), "Payment for order #7"));
+        assertTrue(error.getMessage().contains("Insufficient balance"), error.getMessage());
+        assertTrue(error.getMessage().contains("1001"), error.getMessage());
+    }
+
+    @Test
+    void rejectsBodyDeclaredLargerThanTheLimit() {
+        handler = exchange -> respond(exchange, "{\"payUrl\":\"" + "x".repeat(MAX_RESPONSE_BYTES) + "\"}");
+
+        assertInstanceOf(IOException.class, failure(momo.createPaymentRequest(order(1, 1000), "Payment for order #1")));
+    }
+
+    @Test
+    void rejectsChunkedBodyOnceItGrowsPastTheLimit() {
+        handler = exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write("{\"payUrl\":\"".getBytes(StandardCharsets.US_ASCII));
+                for (int i = 0; i < 64; i++) {
+                    out.write("x".repeat(1024).getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                }
+            }
+        };
+
+        assertInstanceOf(IOException.class, failure(momo.createPaymentRequest(order(1, 1000), "Payment for order #1")));
+    }
+
+    @Test
+    void timesOutWhenMomoDoesNotAnswer() throws Exception {
+        handler = exchange -> Thread.sleep(3_000);
+
+        assertInstanceOf(HttpTimeoutException.class, failure(momo.createPaymentRequest(order(1, 1000), "Payment for order #1")));
+
+        // the in-flight permit came back, so the next checkout still gets through
+        handler = exchange -> respond(exchange, "{\"resultCode\":0,\"payUrl\":\"https://pay/ok\"}");
+        assertEquals("https://pay/ok", momo.createPaymentRequest(order(2, 1000), "Payment for order #2").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void rejectsRequestsOverTheInFlightLimit() throws Exception {
+        handler = exchange -> {
+            Thread.sleep(200);
+            respond(exchange, "{\"resultCode\":0,\"payUrl\":\"https://pay/slow\"}");
+        };
+
+        CompletableFuture<String> first = momo.createPaymentRequest(order(1, 1000), "Payment for order #1");
+        assertInstanceOf(RejectedExecutionException.class, failure(momo.createPaymentRequest(order(2, 1000), "Payment for order #2")));
+        assertEquals("https://pay/slow", first.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void escapesQuotesAndKeepsUnicodeInOrderInfo() throws Exception {
+        handler = exchange -> respond(exchange, "{\"resultCode\":0,\"payUrl\":\"https://pay/ok\"}");
+        String orderInfo = "Sữa rửa mặt \"Đỏ\" \\ 50ml\n🧴";
+
+        momo.createPaymentRequest(order(9, 1000), orderInfo).get(5, TimeUnit.SECONDS);
+
+        JsonNode request = objectMapper.readTree(lastRequest);
+        assertEquals(orderInfo, request.get("orderInfo").asText());
+        assertEquals(PARTNER_CODE, request.get("partnerCode").asText());
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductSearchIndexTest {
+
+    private static final int NO_LIMIT = 100;
+
+    @Test
+    void countsInsertionsDeletionsAndSubstitutions() {
+        assertEquals(0, ProductSearchIndex.editDistance("serum", "serum", NO_LIMIT));
+        assertEquals(1, ProductSearchIndex.editDistance("serum", "serums", NO_LIMIT));
+        assertEquals(1, ProductSearchIndex.editDistance("serum", "seum", NO_LIMIT));
+        assertEquals(1, ProductSearchIndex.editDistance("serum", "serom", NO_LIMIT));
+        assertEquals(3, ProductSearchIndex.editDistance("kitten", "sitting", NO_LIMIT));
+        assertEquals(5, ProductSearchIndex.editDistance("", "toner", NO_LIMIT));
+    }
+
+    @Test
+    void countsAnAdjacentTranspositionAsOneEdit() {
+        assertEquals(1, ProductSearchIndex.editDistance("serum", "sreum", NO_LIMIT));
+        assertEquals(1, ProductSearchIndex.editDistance("toner", "tonre", NO_LIMIT));
+        assertEquals(1, ProductSearchIndex.editDistance("ab", "ba", NO_LIMIT));
+        // optimal string alignment: a transposed pair is not edited again
+        assertEquals(3, ProductSearchIndex.editDistance("ca", "abc", NO_LIMIT));
+    }
+
+    @Test
+    void stopsAtTheLimit() {
+        // length difference alone is over the limit
+        assertEquals(2, ProductSearchIndex.editDistance("mask", "masking", 1));
+        // same length, but every row is already over the limit
+        assertEquals(2, ProductSearchIndex.editDistance("abcd", "wxyz", 1));
+        assertEquals(3, ProductSearchIndex.editDistance("cleanser", "moisture", 2));
+        // within the limit the exact distance comes back
+        assertEquals(2, ProductSearchIndex.editDistance("cleanser", "claenesr", 2));
+    }
+
+    @Test
+    void earlyExitNeverChangesAnAnswerWithinTheLimit() {
+        Random random = new Random(7);
+        for (int i = 0; i < 5_000; i++) {
+            String a = randomWord(random);
+            String b = randomWord(random);
+            int full = ProductSearchIndex.editDistance(a, b, NO_LIMIT);
+            for (int limit = 0; limit <= 3; limit++) {
+                assertEquals(Math.min(full, limit + 1), ProductSearchIndex.editDistance(a, b, limit),
+                        a + " vs " + b + " with limit " + limit);
+            }
+        }
+    }
+
+    @Test
+    void forgivesTyposOnlyInLongEnoughWords() {
+        assertEquals(1.0, ProductSearchIndex.similarity("serum", "serum"));
+        assertEquals(0.8, ProductSearchIndex.similarity("ser", "serum"));
+        assertEquals(0.6, ProductSearchIndex.similarity("sreum", "serum"));
+        assertEquals(0, ProductSearchIndex.similarity("sre", "ser"));
+        assertEquals(0.6, ProductSearchIndex.similarity("clenaser", "cleanser"));
+        assertEquals(0, ProductSearchIndex.similarity("mask", "milk"));
+    }
+
+    @Test
+    void foldsVietnameseToPlainAscii() {
+        assertEquals(List.of("sua", "rua", "mat", "do"), ProductSearchIndex.tokenize("Sữa Rửa Mặt Đỏ"));
+        assertEquals(List.of("duong", "am", "dau"), ProductSearchIndex.tokenize("dưỡng ẩm ĐẦU"));
+        // decomposed input (combining marks) folds the same as precomposed
+        assertEquals(ProductSearchIndex.tokenize("Kem chống nắng"),
+                ProductSearchIndex.tokenize("Kem chống nắng"));
+    }
+
+    @Test
+    void splitsOnAnythingThatIsNotALetterOrDigit() {
+        assertEquals(List.of("kem", "chong", "nang", "spf50", "50ml"),
+                ProductSearchIndex.tokenize("  Kem-chống nắng (SPF50), 50ml!  "));
+        assertEquals(List.of(), ProductSearchIndex.tokenize(" -- "));
+        assertEquals(List.of(), ProductSearchIndex.tokenize(null));
+    }
+
+    private static String randomWord(Random random) {
+        char[] word = new char[random.nextInt(9)];
+        for (int i = 0; i < word.length; i++) {
+            word[i] = (char) ('a' + random.nextInt(4));
+        }
+        return new String(word);
+    }
+}
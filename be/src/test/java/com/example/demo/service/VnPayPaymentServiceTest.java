@@ -0,0 +1,89 @@
+package com.example.demo.service;
+
+import com.example.demo.utils.HmacSigner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VnPayPaymentServiceTest {
+
+    private static final String SECRET = "TESTSECRETKEY0123456789";
+
+    private VnPayPaymentService vnPay;
+    private final HmacSigner signer = new HmacSigner("HmacSHA512", SECRET);
+
+    @BeforeEach
+    void setUp() {
+        vnPay = new VnPayPaymentService();
+        ReflectionTestUtils.setField(vnPay, "tmnCode", "TESTCODE");
+        ReflectionTestUtils.setField(vnPay, "secretKey", SECRET);
+        ReflectionTestUtils.setField(vnPay, "payUrl", "https://sandbox.vnpayment.vn/paymentv2/vpcpay.html");
+        ReflectionTestUtils.setField(vnPay, "returnUrl", "http://localhost:5173/payment-result");
+        ReflectionTestUtils.invokeMethod(vnPay, "init");
+    }
+
+    // what VNPay sends back for a paid order, signed over the sorted, form-encoded vnp_ fields
+    private Map<String, String> signedReturn() {
+        Map<String, String> params = new HashMap<>();
+        params.put("vnp_TxnRef", "42");
+        params.put("vnp_Amount", "15000000");
+        params.put("vnp_OrderInfo", "Thanh toan don hang 42");
+        params.put("vnp_ResponseCode", "00");
+        params.put("vnp_SecureHash", signer.sign(
+                "vnp_Amount=15000000&vnp_OrderInfo=Thanh+toan+don+hang+42&vnp_ResponseCode=00&vnp_TxnRef=42"));
+        return params;
+    }
+
+    @Test
+    void acceptsGenuineReturn() {
+        assertTrue(vnPay.verifySecureHash(signedReturn()));
+    }
+
+    @Test
+    void leavesHashFieldsAndForeignParametersOutOfTheSignedData() {
+        Map<String, String> params = signedReturn();
+        params.put("vnp_SecureHashType", "HmacSHA512");
+        params.put("utm_source", "email");
+        assertTrue(vnPay.verifySecureHash(params));
+    }
+
+    @Test
+    void skipsEmptyValues() {
+        Map<String, String> params = signedReturn();
+        params.put("vnp_BankTranNo", "");
+        assertTrue(vnPay.verifySecureHash(params));
+    }
+
+    @Test
+    void acceptsUppercaseHash() {
+        Map<String, String> params = signedReturn();
+        params.put("vnp_SecureHash", params.get("vnp_SecureHash").toUpperCase());
+        assertTrue(vnPay.verifySecureHash(params));
+    }
+
+    @Test
+    void rejectsTamperedField() {
+        Map<String, String> params = signedReturn();
+        params.put("vnp_Amount", "100");
+        assertFalse(vnPay.verifySecureHash(params));
+    }
+
+    @Test
+    void rejectsAddedField() {
+        Map<String, String> params = signedReturn();
+        params.put("vnp_BankCode", "NCB");
+        assertFalse(vnPay.verifySecureHash(params));
+    }
+
+    @Test
+    void rejectsMissingHash() {
+        Map<String, String> params = signedReturn();
+        params.remove("vnp_SecureHash");
+        assertFalse(vnPay.verifySecureHash(params));
+    }
+}
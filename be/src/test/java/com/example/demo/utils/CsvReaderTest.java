@@ -0,0 +1,64 @@
+package com.example.demo.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvReaderTest {
+
+    @Test
+    void splitsPlainFields() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("a,b,c\n1,,3\n"));
+        assertEquals(List.of("a", "b", "c"), reader.next());
+        assertEquals(List.of("1", "", "3"), reader.next());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void keepsCommasInsideQuotes() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("\"Nguyen, Van A\",100\n"));
+        assertEquals(List.of("Nguyen, Van A", "100"), reader.next());
+    }
+
+    @Test
+    void unescapesDoubledQuotes() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("\"say \"\"hi\"\"\",\"\"\"\"\n"));
+        assertEquals(List.of("say \"hi\"", "\""), reader.next());
+    }
+
+    @Test
+    void treatsCrLfAsOneLineBreak() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("a,b\r\nc,d\r\n"));
+        assertEquals(List.of("a", "b"), reader.next());
+        assertEquals(1, reader.getLine());
+        assertEquals(List.of("c", "d"), reader.next());
+        assertEquals(2, reader.getLine());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void keepsLineBreaksInsideQuotesAndCountsPhysicalLines() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("1,\"first\nsecond\"\n2,x\n"));
+        assertEquals(List.of("1", "first\nsecond"), reader.next());
+        assertEquals(1, reader.getLine());
+        assertEquals(List.of("2", "x"), reader.next());
+        assertEquals(3, reader.getLine());
+    }
+
+    @Test
+    void readsLastRecordWithoutTrailingNewline() throws IOException {
+        CsvReader reader = new CsvReader(new StringReader("a,\"b\""));
+        assertEquals(List.of("a", "b"), reader.next());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void rejectsUnterminatedQuote() {
+        CsvReader reader = new CsvReader(new StringReader("a,\"never closed\n"));
+        assertThrows(IOException.class, reader::next);
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.demo.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    private static final long LEVEL_1 = 64;
+    private static final long LEVEL_2 = 64 * 64;
+    private static final long LEVEL_3 = 64 * 64 * 64;
+    private static final long MAX_DELTA = (1L << 24) - 1;
+
+    // steps one tick at a time and checks that every timer fires on its own tick, never before or after
+    private static void assertFiresExactlyOnTime(long start, long... deltas) {
+        TimingWheel<Long> wheel = new TimingWheel<>(1, start);
+        long last = 0;
+        for (long delta : deltas) {
+            assertTrue(wheel.schedule(start + delta, start + delta));
+            last = Math.max(last, start + delta);
+        }
+        int fired = 0;
+        for (long now = start + 1; now <= last; now++) {
+            for (long deadline : wheel.advance(now)) {
+                assertEquals(now, deadline, "fired at the wrong tick");
+                fired++;
+            }
+        }
+        assertEquals(deltas.length, fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void firesAcrossTheFirstCascadeBoundary() {
+        assertFiresExactlyOnTime(0, 1, 63, LEVEL_1 - 1, LEVEL_1, LEVEL_1 + 1, 2 * LEVEL_1);
+        // starting mid-slot, so that a short delta still crosses into the next turn of the lowest wheel
+        assertFiresExactlyOnTime(60, 3, 4, 5, LEVEL_1 - 1, LEVEL_1, LEVEL_1 + 1);
+    }
+
+    @Test
+    void firesAcrossTheSecondCascadeBoundary() {
+        assertFiresExactlyOnTime(0, LEVEL_2 - 1, LEVEL_2, LEVEL_2 + 1, LEVEL_2 + LEVEL_1);
+        assertFiresExactlyOnTime(LEVEL_2 - 1, 1, 2, LEVEL_2 - 1, LEVEL_2, LEVEL_2 + 1);
+        assertFiresExactlyOnTime(4000, 95, 96, 97, LEVEL_2, 2 * LEVEL_2 - 4000);
+    }
+
+    @Test
+    void firesAcrossTheThirdCascadeBoundary() {
+        assertFiresExactlyOnTime(0, LEVEL_3 - 1, LEVEL_3, LEVEL_3 + 1);
+        assertFiresExactlyOnTime(LEVEL_3 - 10, 9, 10, 11, LEVEL_2, LEVEL_3);
+    }
+
+    @Test
+    void parksDeadlinesBeyondTheLastWheelUntilTheyAreDue() {
+        TimingWheel<String> wheel = new TimingWheel<>(1, 0);
+        long justBeyond = MAX_DELTA + 1;
+        long farBeyond = 3 * (MAX_DELTA + 1) + 12345;
+        assertTrue(wheel.schedule("just", justBeyond));
+        assertTrue(wheel.schedule("far", farBeyond));
+
+        assertEquals(List.of(), wheel.advance(justBeyond - 1));
+        assertEquals(List.of("just"), wheel.advance(justBeyond));
+        assertEquals(List.of(), wheel.advance(farBeyond - 1));
+        assertEquals(List.of("far"), wheel.advance(farBeyond));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void refusesDeadlinesThatAreAlreadyDue() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 10_000);
+        assertFalse(wheel.schedule("past", 5_000));
+        assertFalse(wheel.schedule("now", 10_000));
+        assertFalse(wheel.schedule("earlier in this tick", 9_001));
+        assertEquals(0, wheel.size());
+        assertTrue(wheel.schedule("next tick", 10_001));
+        assertEquals(1, wheel.size());
+    }
+
+    @Test
+    void roundsDeadlinesUpToTheNextTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 0);
+        assertTrue(wheel.schedule("a", 1_500));
+        assertEquals(List.of(), wheel.advance(1_999));
+        assertEquals(List.of("a"), wheel.advance(2_000));
+    }
+
+    @Test
+    void advancesAcrossManyTicksAtOnce() {
+        TimingWheel<Long> wheel = new TimingWheel<>(1, 0);
+        Random random = new Random(42);
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            long deadline = 1 + random.nextInt((int) (2 * LEVEL_3));
+            deadlines.add(deadline);
+            assertTrue(wheel.schedule(deadline, deadline));
+        }
+        deadlines.sort(null);
+
+        long middle = LEVEL_3;
+        List<Long> first = wheel.advance(middle);
+        List<Long> rest = wheel.advance(2 * LEVEL_3);
+
+        // expired in deadline order, each exactly once and none early
+        assertEquals(deadlines.stream().filter(d -> d <= middle).toList(), first);
+        assertEquals(deadlines.stream().filter(d -> d > middle).toList(), rest);
+        assertEquals(0, wheel.size());
+    }
+}
@@ -85,7 +85,7 @@ const ProductCard = ({ product }) => {
             size="small"
           />
           <Typography variant="body2" color="text.secondary" sx={{ ml: 1 }}>
-            ({product.ratings && product.ratings.length})
+            ({product.reviewCount})
           </Typography>
         </Box>
         <Typography variant="h6" color="primary" gutterBottom>
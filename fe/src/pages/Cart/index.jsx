@@ -13,10 +13,12 @@ import {
   Typography,
 } from "@mui/material";
 import numeral from "numeral";
+import { useEffect } from "react";
 import { useDispatch, useSelector } from "react-redux";
 import { useNavigate } from "react-router-dom";
 import {
   clearCart,
+  quoteCart,
   removeFromCart,
   selectCartTotal,
   updateQuantity,
@@ -26,7 +28,21 @@ const Cart = () => {
   const dispatch = useDispatch();
   const navigate = useNavigate();
   const cartItems = useSelector((state) => state.cart.items);
-  const cartTotal = useSelector(selectCartTotal);
+  const localTotal = useSelector(selectCartTotal);
+  const quote = useSelector((state) => state.cart.quote);
+
+  // re-price against the server's prices and stock whenever the cart changes
+  useEffect(() => {
+    if (cartItems.length > 0) {
+      dispatch(quoteCart(cartItems));
+    }
+  }, [cartItems, dispatch]);
+
+  const quotedLines = {};
+  (quote?.lines || []).forEach((line) => {
+    quotedLines[line.productId] = line;
+  });
+  const cartTotal = quote ? quote.total : localTotal;
 
   const handleQuantityChange = (id, quantity) => {
     dispatch(updateQuantity({ id, quantity }));
@@ -100,8 +116,13 @@ const Cart = () => {
                           color="text.secondary"
                           gutterBottom
                         >
-                          {item.price && numeral(item.price).format("0,0")} đ
+                          {numeral(quotedLines[item.id]?.price ?? item.price).format("0,0")} đ
                         </Typography>
+                        {quotedLines[item.id]?.problem && (
+                          <Typography variant="body2" color="error">
+                            {quotedLines[item.id].problem}
+                          </Typography>
+                        )}
                       </Box>
                       <IconButton
                         color="error"
@@ -142,7 +163,9 @@ const Cart = () => {
                         <Add />
                       </IconButton>
                       <Typography variant="body1" sx={{ ml: "auto" }}>
-                        {numeral(item.price * item.quantity).format("0,0")} đ
+                        {numeral(
+                          (quotedLines[item.id]?.price ?? item.price) * item.quantity
+                        ).format("0,0")} đ
                       </Typography>
                     </Box>
                   </Grid>
@@ -189,6 +212,7 @@ const Cart = () => {
                 fullWidth
                 size="large"
                 onClick={handleCheckout}
+                disabled={quote != null && !quote.valid}
               >
                 Proceed to Checkout
               </Button>
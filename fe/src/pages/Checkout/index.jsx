@@ -89,6 +89,8 @@ const Checkout = () => {
   });
   const [error, setError] = useState(null);
   const [loading, setLoading] = useState(false);
+  // one key per checkout, so a retried or double-clicked submit cannot create a second order
+  const [idempotencyKey] = useState(() => crypto.randomUUID());
   const [serverError, setServerError] = useState(null);
 
   const dispatch = useDispatch();
@@ -152,7 +154,8 @@ const Checkout = () => {
       // Create order in the system
       const response = await axios.post('http://localhost:8080/api/orders/create', orderData, {
         headers: {
-          'Authorization': `Bearer ${user.token}`
+          'Authorization': `Bearer ${user.token}`,
+          'Idempotency-Key': idempotencyKey
         }
       });
       
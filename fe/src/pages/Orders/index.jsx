@@ -47,7 +47,9 @@ const getStatusColor = (status) => {
 
 const Orders = () => {
   const dispatch = useDispatch();
-  const { orders, loading, error } = useSelector((state) => state.orders);
+  const { orders, myOrdersCursor, loading, error } = useSelector(
+    (state) => state.orders
+  );
   const [selectedOrder, setSelectedOrder] = useState(null);
 
   useEffect(() => {
@@ -138,6 +140,14 @@ const Orders = () => {
             </Table>
           </TableContainer>
 
+          {myOrdersCursor && (
+            <Box sx={{ textAlign: "center", mb: 4 }}>
+              <Button onClick={() => dispatch(fetchMyOrders(myOrdersCursor))}>
+                Load more orders
+              </Button>
+            </Box>
+          )}
+
           {selectedOrder && (
             <Paper sx={{ p: 3, mb: 3 }}>
               <Box
@@ -194,7 +204,7 @@ const Orders = () => {
                     {selectedOrder.orderDetails &&
                       selectedOrder.orderDetails.map((item) => (
                         <TableRow key={item.id}>
-                          <TableCell>{item.product.name}</TableCell>
+                          <TableCell>{item.productName}</TableCell>
                           <TableCell>
                             {numeral(item.price).format(",0")} đ
                           </TableCell>
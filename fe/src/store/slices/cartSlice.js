@@ -1,4 +1,7 @@
-import { createSlice } from '@reduxjs/toolkit';
+import { createSlice, createAsyncThunk } from '@reduxjs/toolkit';
+import axios from 'axios';
+
+const API_URL = 'http://localhost:8080/api';
 
 const loadCartFromStorage = () => {
   try {
@@ -18,8 +21,23 @@ const saveCartToStorage = (items) => {
   }
 };
 
+// prices and checks stock for the whole cart in one request
+export const quoteCart = createAsyncThunk(
+  'cart/quoteCart',
+  async (items, { rejectWithValue }) => {
+    try {
+      const details = items.map((item) => ({ productId: item.id, quantity: item.quantity }));
+      const response = await axios.post(`${API_URL}/cart/quote`, details);
+      return response.data;
+    } catch (error) {
+      return rejectWithValue(error.response?.data || 'Failed to price the cart');
+    }
+  }
+);
+
 const initialState = {
   items: loadCartFromStorage(),
+  quote: null,
   loading: false,
   error: null,
 };
@@ -52,9 +70,21 @@ const cartSlice = createSlice({
     },
     clearCart: (state) => {
       state.items = [];
+      state.quote = null;
       saveCartToStorage(state.items);
     },
   },
+  extraReducers: (builder) => {
+    builder
+      .addCase(quoteCart.fulfilled, (state, action) => {
+        state.quote = action.payload;
+        state.error = null;
+      })
+      .addCase(quoteCart.rejected, (state, action) => {
+        state.quote = null;
+        state.error = action.payload;
+      });
+  },
 });
 
 export const { addToCart, removeFromCart, updateQuantity, clearCart } = cartSlice.actions;
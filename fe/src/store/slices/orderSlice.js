@@ -33,13 +33,15 @@ export const fetchOrders = createAsyncThunk(
   }
 );
 
+// pass the previous page's nextCursor to load the following page
 export const fetchMyOrders = createAsyncThunk(
   'orders/fetchMyOrders',
-  async (_, { rejectWithValue }) => {
+  async (cursor, { rejectWithValue }) => {
     try {
       const token = localStorage.getItem('token');
       const response = await axios.get(`${API_URL}/orders/my-orders`, {
         headers: { Authorization: `Bearer ${token}` },
+        params: cursor ? { cursor } : {},
       });
       return response.data;
     } catch (error) {
@@ -99,6 +101,7 @@ export const fetchAdminOrders = createAsyncThunk(
 
 const initialState = {
   orders: [],
+  myOrdersCursor: null,
   selectedOrder: null,
   adminOrders: [],
   loading: false,
@@ -151,7 +154,10 @@ const orderSlice = createSlice({
       })
       .addCase(fetchMyOrders.fulfilled, (state, action) => {
         state.loading = false;
-        state.orders = action.payload;
+        state.orders = action.meta.arg
+          ? [...state.orders, ...action.payload.items]
+          : action.payload.items;
+        state.myOrdersCursor = action.payload.nextCursor;
       })
       .addCase(fetchMyOrders.rejected, (state, action) => {
         state.loading = false;